@@ -0,0 +1,110 @@
+package com.github.sigmalko.protonmail.export.domain.migration;
+
+/**
+ * Open-addressing table mapping 64-bit Message-ID hashes to flag bits. Keys and values live in two primitive arrays
+ * (9 bytes per slot), so several hundred thousand messages fit in a few megabytes. Not thread-safe.
+ */
+final class MessageIdHashTable {
+
+    static final byte IN_FILE = 1;
+    static final byte IN_GMAIL = 1 << 1;
+    static final byte COLLISION = 1 << 2;
+    static final byte ABSENT = -1;
+
+    private static final long EMPTY = 0L;
+    private static final int MIN_CAPACITY = 1 << 10;
+    private static final double MAX_LOAD = 0.6;
+
+    private long[] keys;
+    private byte[] values;
+    private int size;
+
+    MessageIdHashTable(int expectedSize) {
+        var capacity = MIN_CAPACITY;
+        while (capacity * MAX_LOAD < expectedSize) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        values = new byte[capacity];
+    }
+
+    static long hash(String messageId) {
+        var hash = 0xcbf29ce484222325L;
+        for (var i = 0; i < messageId.length(); i++) {
+            hash ^= messageId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1L : hash;
+    }
+
+    /**
+     * @return flag bits for the hash, or {@link #ABSENT} when no message with this hash is known
+     */
+    byte get(long hash) {
+        final var slot = find(hash);
+        return keys[slot] == EMPTY ? ABSENT : values[slot];
+    }
+
+    /**
+     * Records a message that is known not to share its Message-ID with any existing entry. A hash that is already
+     * present therefore belongs to a different Message-ID and the slot is marked as a collision.
+     */
+    void putNew(long hash, byte flags) {
+        final var slot = find(hash);
+        if (keys[slot] != EMPTY) {
+            values[slot] |= COLLISION;
+            return;
+        }
+
+        keys[slot] = hash;
+        values[slot] = flags;
+        if (++size > keys.length * MAX_LOAD) {
+            resize();
+        }
+    }
+
+    void setFlag(long hash, byte flag, boolean value) {
+        final var slot = find(hash);
+        if (keys[slot] == EMPTY || (values[slot] & COLLISION) != 0) {
+            return;
+        }
+
+        values[slot] = (byte) (value ? values[slot] | flag : values[slot] & ~flag);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long memoryBytes() {
+        return (long) keys.length * (Long.BYTES + Byte.BYTES);
+    }
+
+    private int find(long hash) {
+        final var mask = keys.length - 1;
+        var slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        final var oldKeys = keys;
+        final var oldValues = values;
+        keys = new long[oldKeys.length << 1];
+        values = new byte[oldKeys.length << 1];
+        for (var i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                final var slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -42,4 +42,25 @@ public class MigrationEntity {
     @Column(name = "MESSAGE_IN_GMAIL", nullable = false)
     @Builder.Default
     private boolean messageInGmail = false;
+
+    @Column(name = "GMAIL_MESSAGE_ID")
+    private Long gmailMessageId;
+
+    /** Gmail labels (X-GM-LABELS) of the message, one per line. */
+    @Column(name = "GMAIL_LABELS", length = 4000)
+    private String gmailLabels;
+
+    /** Set before the message is appended to Gmail, so an interrupted upload can be told apart from a pending one. */
+    @Column(name = "UPLOAD_STARTED_AT")
+    private OffsetDateTime uploadStartedAt;
+
+    /** Folder, UIDVALIDITY and UID reported by APPENDUID (RFC 4315) when the message was uploaded. */
+    @Column(name = "UPLOAD_FOLDER")
+    private String uploadFolder;
+
+    @Column(name = "UPLOAD_UID_VALIDITY")
+    private Long uploadUidValidity;
+
+    @Column(name = "UPLOAD_UID")
+    private Long uploadUid;
 }
@@ -0,0 +1,193 @@
+package com.github.sigmalko.protonmail.export.domain.migration;
+
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Set-based write paths for {@code MIGRATIONS} that would otherwise cost one sequence call and one insert
+ * round-trip per row through JPA.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MigrationJdbcRepository {
+
+    private static final String INSERT_FILE_MIGRATION = """
+            insert into MIGRATIONS (ID, MESSAGE_ID, MESSAGE_DATE, MESSAGE_IN_FILE, MESSAGE_IN_GMAIL)
+            values (next value for MIGRATIONS_SEQ, ?, ?, true, false)
+            """;
+
+    private static final String MERGE_GMAIL_MIGRATION = """
+            merge into MIGRATIONS m
+            using (values (cast(? as varchar(998)))) s(MESSAGE_ID) on m.MESSAGE_ID = s.MESSAGE_ID
+            when matched then update set MESSAGE_IN_GMAIL = true
+            when not matched then insert (ID, MESSAGE_ID, MESSAGE_IN_FILE, MESSAGE_IN_GMAIL)
+                values (next value for MIGRATIONS_SEQ, s.MESSAGE_ID, false, true)
+            """;
+
+    private static final String FILL_MESSAGE_DATE = """
+            update MIGRATIONS set MESSAGE_DATE = ?
+            where MESSAGE_ID = ? and MESSAGE_DATE is null
+            """;
+
+    private static final String UPDATE_GMAIL_ATTRIBUTES = """
+            update MIGRATIONS set GMAIL_MESSAGE_ID = ?, GMAIL_LABELS = ?
+            where MESSAGE_ID = ?
+            """;
+
+    /**
+     * Joins each candidate to the first manifest row scanned for its Message-ID, so nothing is grouped, and applies
+     * the keyset cursor to the rows themselves. The sort key is bound three times: selected, and twice in the cursor
+     * predicate. Apart from the insertion order, the keys are expressions no index covers, so every page evaluates
+     * them for all remaining candidates and sorts those past the cursor.
+     */
+    private static final String SELECT_UPLOAD_CANDIDATES = """
+            select m.ID, m.MESSAGE_ID, m.MESSAGE_DATE, m.UPLOAD_STARTED_AT, f.FILE_PATH, f.FILE_SIZE, f.CONTENT_HASH,
+                %1$s as SORT_KEY
+            from MIGRATIONS m
+            join EML_SCAN_MANIFEST f on f.ID = (
+                select min(s.ID) from EML_SCAN_MANIFEST s where s.MESSAGE_ID = m.MESSAGE_ID)
+            where m.MESSAGE_IN_FILE = true and m.MESSAGE_IN_GMAIL = false
+                and %1$s >= ? and (%1$s > ? or m.ID > ?)
+            order by SORT_KEY, m.ID
+            fetch first ? rows only
+            """;
+
+    private static final String SUM_UPLOAD_CANDIDATE_BYTES = """
+            select coalesce(sum(f.FILE_SIZE), 0)
+            from MIGRATIONS m
+            join EML_SCAN_MANIFEST f on f.ID = (
+                select min(s.ID) from EML_SCAN_MANIFEST s where s.MESSAGE_ID = m.MESSAGE_ID)
+            where m.MESSAGE_IN_FILE = true and m.MESSAGE_IN_GMAIL = false
+            """;
+
+    private static final String UPDATE_UPLOADED_MESSAGE = """
+            update MIGRATIONS
+            set MESSAGE_IN_GMAIL = true, UPLOAD_FOLDER = ?, UPLOAD_UID_VALIDITY = ?, UPLOAD_UID = ?
+            where MESSAGE_ID = ?
+            """;
+
+    private static final String SELECT_UPLOADED_SAMPLE = """
+            select MESSAGE_ID, UPLOAD_UID_VALIDITY, UPLOAD_UID
+            from MIGRATIONS
+            where MESSAGE_IN_GMAIL = true and UPLOAD_FOLDER = ? and UPLOAD_UID_VALIDITY = ?
+            order by rand()
+            fetch first ? rows only
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public int insertFileMigrations(List<MigrationService.FileMigration> migrations) {
+        if (migrations.isEmpty()) {
+            return 0;
+        }
+
+        final var arguments = migrations.stream()
+                .map(migration -> new Object[] {migration.messageId(), migration.messageDate()})
+                .toList();
+        return countAffectedRows(jdbcTemplate.batchUpdate(INSERT_FILE_MIGRATION, arguments));
+    }
+
+    /**
+     * Records Message-IDs seen in Gmail but not (yet) in local files, so a later EML scan finds them already present
+     * in Gmail. Merging keeps it safe against rows inserted concurrently by another folder.
+     */
+    public int mergeGmailMigrations(List<String> messageIds) {
+        if (messageIds.isEmpty()) {
+            return 0;
+        }
+
+        final var arguments = messageIds.stream().map(messageId -> new Object[] {messageId}).toList();
+        return countAffectedRows(jdbcTemplate.batchUpdate(MERGE_GMAIL_MIGRATION, arguments));
+    }
+
+    /** Sets the message date of rows that were first seen in Gmail, where no date was known. */
+    public int fillMessageDates(List<MigrationService.FileMigration> migrations) {
+        final var arguments = migrations.stream()
+                .filter(migration -> migration.messageDate() != null)
+                .map(migration -> new Object[] {migration.messageDate(), migration.messageId()})
+                .toList();
+        if (arguments.isEmpty()) {
+            return 0;
+        }
+        return countAffectedRows(jdbcTemplate.batchUpdate(FILL_MESSAGE_DATE, arguments));
+    }
+
+    public int updateGmailAttributes(List<MigrationService.GmailAttributes> attributes) {
+        if (attributes.isEmpty()) {
+            return 0;
+        }
+
+        final var arguments = attributes.stream()
+                .map(attribute -> new Object[] {
+                    attribute.gmailMessageId(), String.join("\n", attribute.labels()), attribute.messageId()
+                })
+                .toList();
+        return countAffectedRows(jdbcTemplate.batchUpdate(UPDATE_GMAIL_ATTRIBUTES, arguments));
+    }
+
+    /**
+     * Reads the next page of messages to upload after the cursor, in the given order. Messages leaving the candidate
+     * set between pages do not shift later pages.
+     */
+    public List<MigrationService.UploadCandidate> findUploadCandidates(
+            UploadOrder order, MigrationService.UploadCursor after, int limit) {
+        final var arguments = new ArrayList<>(order.arguments());
+        arguments.addAll(order.arguments());
+        arguments.add(after.sortKey());
+        arguments.addAll(order.arguments());
+        arguments.addAll(List.of(after.sortKey(), after.id(), limit));
+        return jdbcTemplate.query(
+                SELECT_UPLOAD_CANDIDATES.formatted(order.sortKey()),
+                (resultSet, rowNum) -> new MigrationService.UploadCandidate(
+                        resultSet.getLong("ID"),
+                        resultSet.getString("MESSAGE_ID"),
+                        resultSet.getObject("MESSAGE_DATE", OffsetDateTime.class),
+                        resultSet.getString("FILE_PATH"),
+                        resultSet.getLong("FILE_SIZE"),
+                        resultSet.getString("CONTENT_HASH"),
+                        resultSet.getObject("UPLOAD_STARTED_AT") != null,
+                        resultSet.getLong("SORT_KEY")),
+                arguments.toArray());
+    }
+
+    public int recordUploadedMessages(String folder, List<MigrationService.UploadedMessage> messages) {
+        if (messages.isEmpty()) {
+            return 0;
+        }
+
+        final var arguments = messages.stream()
+                .map(message -> new Object[] {folder, message.uidValidity(), message.uid(), message.messageId()})
+                .toList();
+        return countAffectedRows(jdbcTemplate.batchUpdate(UPDATE_UPLOADED_MESSAGE, arguments));
+    }
+
+    public List<MigrationService.UploadedMessage> findUploadedSample(String folder, long uidValidity, int size) {
+        return jdbcTemplate.query(
+                SELECT_UPLOADED_SAMPLE,
+                (resultSet, rowNum) -> new MigrationService.UploadedMessage(
+                        resultSet.getString("MESSAGE_ID"),
+                        resultSet.getLong("UPLOAD_UID_VALIDITY"),
+                        resultSet.getLong("UPLOAD_UID")),
+                folder,
+                uidValidity,
+                size);
+    }
+
+    public long sumUploadCandidateBytes() {
+        final var bytes = jdbcTemplate.queryForObject(SUM_UPLOAD_CANDIDATE_BYTES, Long.class);
+        return bytes != null ? bytes : 0;
+    }
+
+    private static int countAffectedRows(int[] results) {
+        var affected = 0;
+        for (final var result : results) {
+            affected += result == Statement.SUCCESS_NO_INFO ? 1 : Math.max(result, 0);
+        }
+        return affected;
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.sigmalko.protonmail.export.domain.migration;
+
+import java.util.Optional;
+import java.util.function.Function;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * In-memory view of which Message-IDs exist in {@code MIGRATIONS} and which flags they carry. It is loaded lazily
+ * on first use and kept in sync by {@link MigrationService} after each committed write. Lookups only fall back to
+ * the database for hashes shared by more than one Message-ID.
+ */
+@Slf4j(topic = "protonmail-export.migration-index")
+@Component
+@RequiredArgsConstructor
+class MigrationMembershipIndex {
+
+    private final MigrationRepository migrationRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private MessageIdHashTable table;
+
+    /**
+     * Resolves the flags for a Message-ID from memory; {@code databaseLookup} is only invoked when the hash of the
+     * Message-ID is shared with another stored Message-ID.
+     */
+    Optional<MigrationRepository.MigrationFlags> lookup(String messageId, Function<String, Optional<MigrationRepository.MigrationFlags>> databaseLookup) {
+        final byte flags;
+        synchronized (this) {
+            flags = loadedTable().get(MessageIdHashTable.hash(messageId));
+        }
+
+        if (flags == MessageIdHashTable.ABSENT) {
+            return Optional.empty();
+        }
+
+        if ((flags & MessageIdHashTable.COLLISION) != 0) {
+            return databaseLookup.apply(messageId);
+        }
+
+        return Optional.of(new MigrationRepository.MigrationFlags(
+                messageId, (flags & MessageIdHashTable.IN_FILE) != 0, (flags & MessageIdHashTable.IN_GMAIL) != 0));
+    }
+
+    synchronized void recordInserted(String messageId, boolean messageInFile, boolean messageInGmail) {
+        if (table == null) {
+            return;
+        }
+
+        table.putNew(MessageIdHashTable.hash(messageId), toBits(messageInFile, messageInGmail));
+    }
+
+    synchronized void recordFlag(String messageId, MigrationService.MigrationFlag flag, boolean value) {
+        if (table == null) {
+            return;
+        }
+
+        final var bit = switch (flag) {
+            case MESSAGE_IN_FILE -> MessageIdHashTable.IN_FILE;
+            case MESSAGE_IN_GMAIL -> MessageIdHashTable.IN_GMAIL;
+        };
+        table.setFlag(MessageIdHashTable.hash(messageId), bit, value);
+    }
+
+    private MessageIdHashTable loadedTable() {
+        if (table == null) {
+            table = load();
+        }
+        return table;
+    }
+
+    private MessageIdHashTable load() {
+        final var startedAt = System.nanoTime();
+        final var loaded = transactionTemplate.execute(status -> {
+            final var result = new MessageIdHashTable((int) migrationRepository.count());
+            try (final var rows = migrationRepository.streamAllFlagsBy()) {
+                rows.forEach(row -> result.putNew(
+                        MessageIdHashTable.hash(row.messageId()),
+                        toBits(row.messageInFile(), row.messageInGmail())));
+            }
+            return result;
+        });
+
+        log.info(
+                "Loaded {} Message-IDs into the migration index in {} ms (~{} KB).",
+                loaded.size(),
+                (System.nanoTime() - startedAt) / 1_000_000,
+                loaded.memoryBytes() / 1024);
+        return loaded;
+    }
+
+    private static byte toBits(boolean messageInFile, boolean messageInGmail) {
+        return (byte) ((messageInFile ? MessageIdHashTable.IN_FILE : 0)
+                | (messageInGmail ? MessageIdHashTable.IN_GMAIL : 0));
+    }
+}
@@ -1,8 +1,10 @@
 package com.github.sigmalko.protonmail.export.domain.migration;
 
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -14,6 +16,10 @@ public interface MigrationRepository extends JpaRepository<MigrationEntity, Long
 
     Optional<MigrationStatus> findByMessageId(String messageId);
 
+    Optional<MigrationFlags> findFlagsByMessageId(String messageId);
+
+    Stream<MigrationFlags> streamAllFlagsBy();
+
     List<MigrationStatus> findAllByMessageInGmailFalse();
 
     long countByMessageInGmailTrueAndMessageInFileTrue();
@@ -33,9 +39,28 @@ public interface MigrationRepository extends JpaRepository<MigrationEntity, Long
     int updateMessageInGmailByMessageId(
             @Param("messageId") String messageId, @Param("value") boolean value);
 
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update MigrationEntity m set m.messageInFile = true where m.messageInFile = false and m.messageId in :messageIds")
+    int markMessagesInFile(@Param("messageIds") Collection<String> messageIds);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update MigrationEntity m set m.messageInGmail = true where m.messageInGmail = false and m.messageId in :messageIds")
+    int markMessagesInGmail(@Param("messageIds") Collection<String> messageIds);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update MigrationEntity m set m.messageInGmail = false where m.messageInGmail = true and m.messageId in :messageIds")
+    int markMessagesMissingInGmail(@Param("messageIds") Collection<String> messageIds);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update MigrationEntity m set m.uploadStartedAt = :startedAt where m.messageId in :messageIds")
+    int markUploadStarted(
+            @Param("messageIds") Collection<String> messageIds, @Param("startedAt") OffsetDateTime startedAt);
+
     record MigrationStatus(
             String messageId,
             OffsetDateTime messageDate,
             boolean messageInFile,
             boolean messageInGmail) {}
+
+    record MigrationFlags(String messageId, boolean messageInFile, boolean messageInGmail) {}
 }
@@ -2,6 +2,10 @@ package com.github.sigmalko.protonmail.export.domain.migration;
 
 import jakarta.persistence.EntityNotFoundException;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
@@ -9,19 +13,194 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Slf4j(topic = "protonmail-export.migration-service")
 @Service
 @RequiredArgsConstructor
 public class MigrationService {
 
+    private static final int IN_CLAUSE_CHUNK_SIZE = 500;
+    private static final int GMAIL_LABELS_MAX_LENGTH = 4000;
+
     private final MigrationRepository migrationRepository;
+    private final MigrationJdbcRepository migrationJdbcRepository;
+    private final MigrationMembershipIndex membershipIndex;
 
     @Transactional
     public MigrationEntity createFileMigration(String messageId, OffsetDateTime messageDate) {
         return createMigration(messageId, messageDate, builder -> builder.messageInFile(true));
     }
 
+    /** Stores a message seen in Gmail that was not discovered in local files; see {@link #markMessagesInGmail}. */
+    @Transactional
+    public MigrationEntity createGmailMigration(String messageId, OffsetDateTime messageDate) {
+        return createMigration(messageId, messageDate, builder -> builder.messageInGmail(true));
+    }
+
+    /**
+     * Upserts a batch of messages discovered in local files in one transaction. Existence is resolved through the
+     * in-memory membership index; existing rows get {@code MESSAGE_IN_FILE} set with a single set-based update per
+     * chunk and missing rows are inserted with one JDBC batch. Duplicate Message-IDs within the batch are counted as
+     * unchanged.
+     */
+    @Transactional
+    public BulkUpsertResult upsertFileMigrations(List<FileMigration> migrations) {
+        final var unique = new LinkedHashMap<String, FileMigration>();
+        migrations.forEach(migration -> unique.putIfAbsent(migration.messageId(), migration));
+
+        final var toFlag = new ArrayList<String>();
+        final var flaggedMigrations = new ArrayList<FileMigration>();
+        final var toInsert = new ArrayList<FileMigration>();
+        var unchanged = migrations.size() - unique.size();
+        for (final var migration : unique.values()) {
+            final var flags = findFlagsByMessageId(migration.messageId());
+            if (flags.isEmpty()) {
+                toInsert.add(migration);
+            } else if (flags.get().messageInFile()) {
+                unchanged++;
+            } else {
+                toFlag.add(migration.messageId());
+                flaggedMigrations.add(migration);
+            }
+        }
+
+        var updated = 0;
+        for (final var chunk : chunks(toFlag)) {
+            updated += migrationRepository.markMessagesInFile(chunk);
+        }
+        // Rows first seen in Gmail were stored without a date.
+        migrationJdbcRepository.fillMessageDates(flaggedMigrations);
+        final var inserted = migrationJdbcRepository.insertFileMigrations(toInsert);
+
+        afterCommit(() -> {
+            toFlag.forEach(messageId -> membershipIndex.recordFlag(messageId, MigrationFlag.MESSAGE_IN_FILE, true));
+            toInsert.forEach(migration -> membershipIndex.recordInserted(migration.messageId(), true, false));
+        });
+
+        final var result = new BulkUpsertResult(inserted, updated, unchanged + toFlag.size() - updated);
+        log.debug(
+                "Upserted {} file migrations (inserted={}, updated={}, unchanged={}).",
+                migrations.size(),
+                result.inserted(),
+                result.updated(),
+                result.unchanged());
+        return result;
+    }
+
+    /**
+     * Flags every known Message-ID of a Gmail fetch window as present in Gmail with one set-based update per chunk.
+     * Message-IDs that were never discovered in local files are stored as present in Gmail only, so files scanned
+     * later (e.g. from a second export) are not uploaded again once incremental sync has moved past their UIDs.
+     */
+    @Transactional
+    public GmailReconciliationResult markMessagesInGmail(Collection<String> messageIds) {
+        final var toFlag = new ArrayList<String>();
+        final var unknown = new ArrayList<String>();
+        var unchanged = 0;
+        for (final var messageId : new LinkedHashSet<>(messageIds)) {
+            final var flags = findFlagsByMessageId(messageId);
+            if (flags.isEmpty()) {
+                unknown.add(messageId);
+            } else if (flags.get().messageInGmail()) {
+                unchanged++;
+            } else {
+                toFlag.add(messageId);
+            }
+        }
+
+        var updated = 0;
+        for (final var chunk : chunks(toFlag)) {
+            updated += migrationRepository.markMessagesInGmail(chunk);
+        }
+
+        migrationJdbcRepository.mergeGmailMigrations(unknown);
+
+        afterCommit(() -> {
+            toFlag.forEach(messageId -> membershipIndex.recordFlag(messageId, MigrationFlag.MESSAGE_IN_GMAIL, true));
+            unknown.forEach(messageId -> membershipIndex.recordInserted(messageId, false, true));
+        });
+        log.debug(
+                "Reconciled {} Gmail Message-IDs (updated={}, unchanged={}, not in files={}).",
+                messageIds.size(),
+                updated,
+                unchanged,
+                unknown.size());
+        return new GmailReconciliationResult(updated, unchanged + toFlag.size() - updated, unknown.size());
+    }
+
+    /** Clears the Gmail flag of messages that disappeared from Gmail, e.g. because they were deleted there. */
+    @Transactional
+    public int markMessagesMissingInGmail(Collection<String> messageIds) {
+        final var distinct = List.copyOf(new LinkedHashSet<>(messageIds));
+        var updated = 0;
+        for (final var chunk : chunks(distinct)) {
+            updated += migrationRepository.markMessagesMissingInGmail(chunk);
+        }
+
+        afterCommit(() -> distinct.forEach(
+                messageId -> membershipIndex.recordFlag(messageId, MigrationFlag.MESSAGE_IN_GMAIL, false)));
+        log.debug("Cleared the Gmail flag of {} of {} Message-IDs.", updated, distinct.size());
+        return updated;
+    }
+
+    /**
+     * Stores the Gmail message id and labels reported for messages that are already known, with one JDBC batch.
+     * Labels longer than the column are cut at the last complete label.
+     */
+    @Transactional
+    public int recordGmailAttributes(List<GmailAttributes> attributes) {
+        final var known = attributes.stream()
+                .filter(attribute -> findFlagsByMessageId(attribute.messageId()).isPresent())
+                .map(attribute -> new GmailAttributes(
+                        attribute.messageId(), attribute.gmailMessageId(), fitLabels(attribute.labels())))
+                .toList();
+        final var updated = migrationJdbcRepository.updateGmailAttributes(known);
+        log.debug("Stored Gmail attributes for {} of {} messages.", updated, attributes.size());
+        return updated;
+    }
+
+    @Transactional(readOnly = true)
+    public List<UploadCandidate> findUploadCandidates(UploadOrder order, UploadCursor after, int limit) {
+        return migrationJdbcRepository.findUploadCandidates(order, after, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public long sumUploadCandidateBytes() {
+        return migrationJdbcRepository.sumUploadCandidateBytes();
+    }
+
+    /** Records that an upload of the messages is about to start; see {@link UploadCandidate#uploadStarted()}. */
+    @Transactional
+    public int markUploadStarted(Collection<String> messageIds) {
+        final var startedAt = OffsetDateTime.now();
+        var updated = 0;
+        for (final var chunk : chunks(List.copyOf(messageIds))) {
+            updated += migrationRepository.markUploadStarted(chunk, startedAt);
+        }
+        return updated;
+    }
+
+    /**
+     * Flags uploaded messages as present in Gmail and stores the UID each one got in the upload folder, with one JDBC
+     * batch, so the upload can be checked later by UID instead of by fetching headers.
+     */
+    @Transactional
+    public int recordUploadedMessages(String folder, List<UploadedMessage> messages) {
+        final var updated = migrationJdbcRepository.recordUploadedMessages(folder, messages);
+        afterCommit(() -> messages.forEach(message ->
+                membershipIndex.recordFlag(message.messageId(), MigrationFlag.MESSAGE_IN_GMAIL, true)));
+        log.debug("Recorded {} of {} uploaded messages in folder '{}'.", updated, messages.size(), folder);
+        return updated;
+    }
+
+    /** Picks a random sample of messages uploaded to the folder under the given UIDVALIDITY. */
+    @Transactional(readOnly = true)
+    public List<UploadedMessage> findUploadedSample(String folder, long uidValidity, int size) {
+        return migrationJdbcRepository.findUploadedSample(folder, uidValidity, size);
+    }
+
     @Transactional
     public void updateFlagByMessageId(String messageId, MigrationFlag flag, boolean value) {
         int updatedRows = switch (flag) {
@@ -33,9 +212,18 @@ public class MigrationService {
             throw new EntityNotFoundException("Migration entry not found for messageId=" + messageId);
         }
 
+        afterCommit(() -> membershipIndex.recordFlag(messageId, flag, value));
         log.debug("Updated {} flag to {} for messageId={} (affectedRows={})", flag, value, messageId, updatedRows);
     }
 
+    /**
+     * Resolves existence and flags of a message from the in-memory membership index, touching the database only
+     * when the Message-ID hash is ambiguous.
+     */
+    public Optional<MigrationRepository.MigrationFlags> findFlagsByMessageId(String messageId) {
+        return membershipIndex.lookup(messageId, migrationRepository::findFlagsByMessageId);
+    }
+
     @Transactional(readOnly = true)
     public Optional<MigrationRepository.MigrationStatus> findByMessageId(String messageId) {
         return migrationRepository.findByMessageId(messageId);
@@ -61,6 +249,39 @@ public class MigrationService {
         return migrationRepository.findAllMessageIdByMessageInGmailFalseAndMessageInFileTrue();
     }
 
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static List<String> fitLabels(List<String> labels) {
+        var length = 0;
+        for (var i = 0; i < labels.size(); i++) {
+            length += labels.get(i).length() + (i > 0 ? 1 : 0);
+            if (length > GMAIL_LABELS_MAX_LENGTH) {
+                return labels.subList(0, i);
+            }
+        }
+        return labels;
+    }
+
+    private static List<List<String>> chunks(List<String> values) {
+        final var chunks = new ArrayList<List<String>>();
+        for (var from = 0; from < values.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            chunks.add(values.subList(from, Math.min(values.size(), from + IN_CLAUSE_CHUNK_SIZE)));
+        }
+        return chunks;
+    }
+
     private MigrationEntity createMigration(
             String messageId,
             OffsetDateTime messageDate,
@@ -70,6 +291,8 @@ public class MigrationService {
                 .messageDate(messageDate);
         builderCustomizer.accept(builder);
         MigrationEntity saved = migrationRepository.save(builder.build());
+        afterCommit(() -> membershipIndex.recordInserted(
+                saved.getMessageId(), saved.isMessageInFile(), saved.isMessageInGmail()));
         log.debug(
                 "Created migration entry with id={} for messageId={} (messageInFile={}, messageInGmail={})",
                 saved.getId(),
@@ -79,6 +302,43 @@ public class MigrationService {
         return saved;
     }
 
+    public record FileMigration(String messageId, OffsetDateTime messageDate) {}
+
+    public record BulkUpsertResult(int inserted, int updated, int unchanged) {}
+
+    public record GmailReconciliationResult(int updated, int unchanged, int unknown) {}
+
+    public record GmailAttributes(String messageId, long gmailMessageId, List<String> labels) {}
+
+    /**
+     * A message present in the local files but not in Gmail, with the size and content hash its file had when scanned.
+     * {@code uploadStarted} marks an earlier upload attempt that was never confirmed, so the message may already be in
+     * Gmail.
+     */
+    public record UploadCandidate(
+            long id,
+            String messageId,
+            OffsetDateTime messageDate,
+            String filePath,
+            long fileSize,
+            String contentHash,
+            boolean uploadStarted,
+            long sortKey) {
+
+        public UploadCursor cursor() {
+            return new UploadCursor(sortKey, id);
+        }
+    }
+
+    /** A message appended to Gmail, identified in the upload folder by UIDVALIDITY and UID. */
+    public record UploadedMessage(String messageId, long uidValidity, long uid) {}
+
+    /** Keyset position in an {@link UploadOrder}: the sort key and id of the last candidate read. */
+    public record UploadCursor(long sortKey, long id) {
+
+        public static final UploadCursor START = new UploadCursor(Long.MIN_VALUE, Long.MIN_VALUE);
+    }
+
     public enum MigrationFlag {
         MESSAGE_IN_FILE,
         MESSAGE_IN_GMAIL
@@ -0,0 +1,62 @@
+package com.github.sigmalko.protonmail.export.domain.migration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Order in which upload candidates are paged. An order is a {@code BIGINT} sort key computed per message over
+ * {@code MIGRATIONS m} and the {@code EML_SCAN_MANIFEST f} row of its file; lower keys are uploaded first and ties fall
+ * back to the message id, so {@code (sort key, id)} is a stable keyset cursor. The expression is evaluated once per
+ * occurrence in the query, so its {@link #arguments()} are bound for each.
+ */
+public interface UploadOrder {
+
+    String sortKey();
+
+    default List<Object> arguments() {
+        return List.of();
+    }
+
+    /** The order messages were first stored in. */
+    static UploadOrder insertionOrder() {
+        return () -> "m.ID";
+    }
+
+    /** Newest message date first; messages without a date go last. */
+    static UploadOrder newestFirst() {
+        return () -> "coalesce(-cast(extract(epoch from m.MESSAGE_DATE) as bigint), 9223372036854775807)";
+    }
+
+    /** Smallest file first, which uploads the most messages per byte of quota. */
+    static UploadOrder smallestFirst() {
+        return () -> "f.FILE_SIZE";
+    }
+
+    /**
+     * Messages carrying the first of the given Proton label IDs, then the second, and so on; the rest go last.
+     * Labels are only known for files scanned with their metadata sidecar.
+     */
+    static UploadOrder labelPriority(List<String> labelIds) {
+        final var sortKey = new StringBuilder("case");
+        final var arguments = new ArrayList<Object>(labelIds.size());
+        for (var rank = 0; rank < labelIds.size(); rank++) {
+            sortKey.append(" when locate(?, concat(char(10), f.LABEL_IDS, char(10))) > 0 then ").append(rank);
+            arguments.add("\n" + labelIds.get(rank) + "\n");
+        }
+        sortKey.append(" else ").append(labelIds.size()).append(" end");
+
+        final var expression = labelIds.isEmpty() ? "0" : sortKey.toString();
+        final var boundArguments = List.copyOf(arguments);
+        return new UploadOrder() {
+            @Override
+            public String sortKey() {
+                return expression;
+            }
+
+            @Override
+            public List<Object> arguments() {
+                return boundArguments;
+            }
+        };
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.sigmalko.protonmail.export.domain.problem;
+
+import java.sql.Statement;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Batch insert path for {@code PROBLEMS}, used when a whole fetch window reports problems at once.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProblemJdbcRepository {
+
+    private static final String INSERT_PROBLEM = """
+            insert into PROBLEMS (ID, MESSAGE_DATE, MESSAGE_FILE, MESSAGE_IS_FILE, MESSAGE_IS_REMOTE,
+                    MESSAGE_FROM, MESSAGE_DIAGNOSTICS)
+            values (next value for PROBLEMS_SEQ, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public int insertProblems(List<ProblemEntity> problems) {
+        if (problems.isEmpty()) {
+            return 0;
+        }
+
+        final var arguments = problems.stream()
+                .map(problem -> new Object[] {
+                        problem.getMessageDate(),
+                        problem.getMessageFile(),
+                        problem.isMessageIsFile(),
+                        problem.isMessageIsRemote(),
+                        problem.getMessageFrom(),
+                        problem.getMessageDiagnostics()})
+                .toList();
+        final var results = jdbcTemplate.batchUpdate(INSERT_PROBLEM, arguments);
+        var inserted = 0;
+        for (final var result : results) {
+            inserted += result == Statement.SUCCESS_NO_INFO ? 1 : Math.max(result, 0);
+        }
+        return inserted;
+    }
+}
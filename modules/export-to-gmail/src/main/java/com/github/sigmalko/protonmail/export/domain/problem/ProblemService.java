@@ -1,6 +1,7 @@
 package com.github.sigmalko.protonmail.export.domain.problem;
 
 import java.time.OffsetDateTime;
+import java.util.List;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -13,6 +14,7 @@ import org.springframework.util.StringUtils;
 public class ProblemService {
 
     private final ProblemRepository problemRepository;
+    private final ProblemJdbcRepository problemJdbcRepository;
 
     @Transactional
     public ProblemEntity logFileProblem(
@@ -37,6 +39,21 @@ public class ProblemService {
         return saved;
     }
 
+    @Transactional
+    public int logRemoteProblems(List<RemoteProblem> problems) {
+        final var inserted = problemJdbcRepository.insertProblems(problems.stream()
+                .map(problem -> buildProblem(
+                        problem.messageDate(),
+                        null,
+                        false,
+                        true,
+                        normalizeSender(problem.messageFrom()),
+                        problem.diagnostics()))
+                .toList());
+        log.debug("Stored {} remote problem entries in one batch.", inserted);
+        return inserted;
+    }
+
     private ProblemEntity buildProblem(
             OffsetDateTime messageDate,
             String messageFile,
@@ -57,4 +74,6 @@ public class ProblemService {
     private String normalizeSender(String messageFrom) {
         return StringUtils.hasText(messageFrom) ? messageFrom : null;
     }
+
+    public record RemoteProblem(OffsetDateTime messageDate, String messageFrom, String diagnostics) {}
 }
@@ -0,0 +1,41 @@
+package com.github.sigmalko.protonmail.export.domain.quota;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import java.time.OffsetDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/** One upload charged against the upload budgets; entries older than the longest budget period are pruned. */
+@Entity
+@Table(
+        name = "UPLOAD_QUOTA_LEDGER",
+        indexes = @Index(name = "UPLOAD_QUOTA_LEDGER_UPLOADED_AT_IDX", columnList = "UPLOADED_AT"))
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class UploadQuotaLedgerEntity {
+
+    @Id
+    @SequenceGenerator(name = "upload_quota_ledger_seq", sequenceName = "UPLOAD_QUOTA_LEDGER_SEQ", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "upload_quota_ledger_seq")
+    private Long id;
+
+    @Column(name = "UPLOADED_AT", nullable = false)
+    private OffsetDateTime uploadedAt;
+
+    @Column(name = "BYTES", nullable = false)
+    private long bytes;
+}
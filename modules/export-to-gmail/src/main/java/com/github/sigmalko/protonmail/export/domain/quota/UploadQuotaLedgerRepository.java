@@ -0,0 +1,19 @@
+package com.github.sigmalko.protonmail.export.domain.quota;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UploadQuotaLedgerRepository extends JpaRepository<UploadQuotaLedgerEntity, Long> {
+
+    List<UploadQuotaLedgerEntity> findAllByUploadedAtAfterOrderByUploadedAtAscIdAsc(OffsetDateTime uploadedAt);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("delete from UploadQuotaLedgerEntity l where l.uploadedAt <= :uploadedAt")
+    int deleteAllUploadedUpTo(@Param("uploadedAt") OffsetDateTime uploadedAt);
+}
@@ -0,0 +1,45 @@
+package com.github.sigmalko.protonmail.export.domain.quota;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Slf4j(topic = "protonmail-export.upload-quota-service")
+@Service
+@RequiredArgsConstructor
+public class UploadQuotaService {
+
+    private final UploadQuotaLedgerRepository ledgerRepository;
+
+    /** Returns the uploads charged after the given instant, oldest first. */
+    @Transactional(readOnly = true)
+    public List<QuotaCharge> findChargesAfter(Instant after) {
+        return ledgerRepository.findAllByUploadedAtAfterOrderByUploadedAtAscIdAsc(after.atOffset(ZoneOffset.UTC))
+                .stream()
+                .map(entity -> new QuotaCharge(entity.getUploadedAt().toInstant(), entity.getBytes()))
+                .toList();
+    }
+
+    @Transactional
+    public void recordCharge(QuotaCharge charge) {
+        ledgerRepository.save(UploadQuotaLedgerEntity.builder()
+                .uploadedAt(charge.uploadedAt().atOffset(ZoneOffset.UTC))
+                .bytes(charge.bytes())
+                .build());
+        log.debug("Charged {} bytes against the upload budgets.", charge.bytes());
+    }
+
+    /** Drops ledger entries that no budget window can reach any more. */
+    @Transactional
+    public int deleteChargesUpTo(Instant upTo) {
+        final var deleted = ledgerRepository.deleteAllUploadedUpTo(upTo.atOffset(ZoneOffset.UTC));
+        log.debug("Pruned {} upload quota ledger entries.", deleted);
+        return deleted;
+    }
+
+    public record QuotaCharge(Instant uploadedAt, long bytes) {}
+}
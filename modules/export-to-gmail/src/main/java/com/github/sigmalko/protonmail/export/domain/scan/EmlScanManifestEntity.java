@@ -0,0 +1,59 @@
+package com.github.sigmalko.protonmail.export.domain.scan;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Table(
+        name = "EML_SCAN_MANIFEST",
+        indexes = @Index(name = "EML_SCAN_MANIFEST_MESSAGE_ID_IDX", columnList = "MESSAGE_ID"))
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class EmlScanManifestEntity {
+
+    /** Room for about 180 custom Proton label IDs of 88 characters each. */
+    public static final int LABEL_IDS_LENGTH = 16_384;
+
+    @Id
+    @SequenceGenerator(name = "eml_scan_manifest_seq", sequenceName = "EML_SCAN_MANIFEST_SEQ", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "eml_scan_manifest_seq")
+    private Long id;
+
+    @Column(name = "FILE_PATH", nullable = false, unique = true, length = 1024)
+    private String filePath;
+
+    @Column(name = "FILE_SIZE", nullable = false)
+    private long fileSize;
+
+    @Column(name = "FILE_MODIFIED_MILLIS", nullable = false)
+    private long fileModifiedMillis;
+
+    @Column(name = "MESSAGE_ID", length = 998 /* RFC 5322 */)
+    private String messageId;
+
+    /** Hex-encoded SHA-256 of the file content; only recorded with {@code eml.reader.content-hash-enabled}. */
+    @Column(name = "CONTENT_HASH", length = 64)
+    private String contentHash;
+
+    /**
+     * Proton label IDs from the metadata sidecar, one per line; empty when no sidecar labels were found and
+     * {@code null} when the file was scanned without sidecar support.
+     */
+    @Column(name = "LABEL_IDS", length = LABEL_IDS_LENGTH)
+    private String labelIds;
+}
@@ -0,0 +1,26 @@
+package com.github.sigmalko.protonmail.export.domain.scan;
+
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EmlScanManifestRepository extends JpaRepository<EmlScanManifestEntity, Long> {
+
+    /** Only whether a hash and labels were recorded is loaded, not the values, to keep the per-file footprint small. */
+    @Query("""
+            select new com.github.sigmalko.protonmail.export.domain.scan.EmlScanManifestRepository$FileFingerprint(
+                f.filePath, f.fileSize, f.fileModifiedMillis,
+                case when f.contentHash is not null then true else false end,
+                case when f.labelIds is not null then true else false end)
+            from EmlScanManifestEntity f
+            """)
+    List<FileFingerprint> findAllFingerprints();
+
+    List<EmlScanManifestEntity> findAllByFilePathIn(Collection<String> filePaths);
+
+    record FileFingerprint(
+            String filePath, long fileSize, long fileModifiedMillis, boolean contentHashed, boolean labelsRead) {}
+}
@@ -0,0 +1,105 @@
+package com.github.sigmalko.protonmail.export.domain.scan;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Slf4j(topic = "protonmail-export.eml-scan-manifest-service")
+@Service
+@RequiredArgsConstructor
+public class EmlScanManifestService {
+
+    private final EmlScanManifestRepository manifestRepository;
+
+    /**
+     * Loads the fingerprint of every previously scanned file, keyed by path, so callers can skip unchanged files
+     * with a single map lookup instead of a query per file.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, EmlScanManifestRepository.FileFingerprint> loadFingerprints() {
+        final var fingerprints = manifestRepository.findAllFingerprints();
+        final var byPath = new HashMap<String, EmlScanManifestRepository.FileFingerprint>(
+                Math.max(16, fingerprints.size() * 4 / 3 + 1));
+        fingerprints.forEach(fingerprint -> byPath.put(fingerprint.filePath(), fingerprint));
+        log.debug("Loaded {} EML scan manifest entries.", byPath.size());
+        return byPath;
+    }
+
+    @Transactional
+    public void recordScannedFiles(List<ScannedFile> scannedFiles) {
+        if (scannedFiles.isEmpty()) {
+            return;
+        }
+
+        final var existing = manifestRepository
+                .findAllByFilePathIn(scannedFiles.stream().map(ScannedFile::filePath).toList())
+                .stream()
+                .collect(Collectors.toMap(EmlScanManifestEntity::getFilePath, Function.identity()));
+
+        final var entities = scannedFiles.stream()
+                .map(scannedFile -> {
+                    final var entity = existing.get(scannedFile.filePath());
+                    if (entity == null) {
+                        return EmlScanManifestEntity.builder()
+                                .filePath(scannedFile.filePath())
+                                .fileSize(scannedFile.fileSize())
+                                .fileModifiedMillis(scannedFile.fileModifiedMillis())
+                                .messageId(scannedFile.messageId())
+                                .contentHash(scannedFile.contentHash())
+                                .labelIds(joinLabelIds(scannedFile.labelIds()))
+                                .build();
+                    }
+
+                    entity.setFileSize(scannedFile.fileSize());
+                    entity.setFileModifiedMillis(scannedFile.fileModifiedMillis());
+                    entity.setMessageId(scannedFile.messageId());
+                    entity.setContentHash(scannedFile.contentHash());
+                    entity.setLabelIds(joinLabelIds(scannedFile.labelIds()));
+                    return entity;
+                })
+                .toList();
+        manifestRepository.saveAll(entities);
+        log.debug("Recorded {} EML scan manifest entries ({} updated).", entities.size(), existing.size());
+    }
+
+    /** Labels that do not fit into the column are dropped from the end; they only matter for the upload order. */
+    private static String joinLabelIds(List<String> labelIds) {
+        if (labelIds == null) {
+            return null;
+        }
+
+        final var joined = new StringBuilder();
+        for (var index = 0; index < labelIds.size(); index++) {
+            final var labelId = labelIds.get(index);
+            if (joined.length() + 1 + labelId.length() > EmlScanManifestEntity.LABEL_IDS_LENGTH) {
+                log.debug("Dropping {} of {} label IDs that exceed the manifest column.", labelIds.size() - index,
+                        labelIds.size());
+                break;
+            }
+
+            if (index > 0) {
+                joined.append('\n');
+            }
+            joined.append(labelId);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * {@code contentHash} is {@code null} unless content hashing is enabled; {@code labelIds} is {@code null} when the
+     * file was scanned without sidecar support and empty when no sidecar labels were found.
+     */
+    public record ScannedFile(
+            String filePath,
+            long fileSize,
+            long fileModifiedMillis,
+            String messageId,
+            String contentHash,
+            List<String> labelIds) {}
+}
@@ -0,0 +1,53 @@
+package com.github.sigmalko.protonmail.export.domain.sync;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import java.time.OffsetDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * UID range of a folder that is fetched independently of the other ranges. {@code CHECKPOINT_UID} is the highest UID
+ * of the range that was already reconciled, so an interrupted partition resumes right after it.
+ */
+@Entity
+@Table(name = "FOLDER_SYNC_PARTITIONS")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class FolderSyncPartitionEntity {
+
+    @Id
+    @SequenceGenerator(name = "folder_sync_partitions_seq", sequenceName = "FOLDER_SYNC_PARTITIONS_SEQ", allocationSize = 1)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "folder_sync_partitions_seq")
+    private Long id;
+
+    @Column(name = "FOLDER_NAME", nullable = false, length = 1024)
+    private String folderName;
+
+    @Column(name = "UID_VALIDITY", nullable = false)
+    private long uidValidity;
+
+    @Column(name = "START_UID", nullable = false)
+    private long startUid;
+
+    @Column(name = "END_UID", nullable = false)
+    private long endUid;
+
+    @Column(name = "CHECKPOINT_UID", nullable = false)
+    private long checkpointUid;
+
+    @Column(name = "UPDATED_AT")
+    private OffsetDateTime updatedAt;
+}
@@ -0,0 +1,30 @@
+package com.github.sigmalko.protonmail.export.domain.sync;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface FolderSyncPartitionRepository extends JpaRepository<FolderSyncPartitionEntity, Long> {
+
+    List<FolderSyncPartitionEntity> findAllByFolderNameOrderByStartUid(String folderName);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("""
+            update FolderSyncPartitionEntity p
+            set p.checkpointUid = :checkpointUid, p.updatedAt = :updatedAt
+            where p.id = :id and p.checkpointUid < :checkpointUid
+            """)
+    int advanceCheckpoint(
+            @Param("id") long id,
+            @Param("checkpointUid") long checkpointUid,
+            @Param("updatedAt") OffsetDateTime updatedAt);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("delete from FolderSyncPartitionEntity p where p.folderName = :folderName")
+    int deleteAllByFolderName(@Param("folderName") String folderName);
+}
@@ -0,0 +1,46 @@
+package com.github.sigmalko.protonmail.export.domain.sync;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import java.time.OffsetDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Table(name = "FOLDER_SYNC_STATES")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class FolderSyncStateEntity {
+
+    @Id
+    @SequenceGenerator(name = "folder_sync_states_seq", sequenceName = "FOLDER_SYNC_STATES_SEQ", allocationSize = 1)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "folder_sync_states_seq")
+    private Long id;
+
+    @Column(name = "FOLDER_NAME", nullable = false, unique = true, length = 1024)
+    private String folderName;
+
+    @Column(name = "UID_VALIDITY", nullable = false)
+    private long uidValidity;
+
+    @Column(name = "LAST_SEEN_UID", nullable = false)
+    private long lastSeenUid;
+
+    @Column(name = "HIGHEST_MOD_SEQ")
+    private Long highestModSeq;
+
+    @Column(name = "LAST_SYNCED_AT")
+    private OffsetDateTime lastSyncedAt;
+}
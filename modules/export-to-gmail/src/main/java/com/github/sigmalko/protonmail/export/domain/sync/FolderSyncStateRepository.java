@@ -0,0 +1,11 @@
+package com.github.sigmalko.protonmail.export.domain.sync;
+
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface FolderSyncStateRepository extends JpaRepository<FolderSyncStateEntity, Long> {
+
+    Optional<FolderSyncStateEntity> findByFolderName(String folderName);
+}
@@ -0,0 +1,105 @@
+package com.github.sigmalko.protonmail.export.domain.sync;
+
+import java.time.Clock;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Slf4j(topic = "protonmail-export.folder-sync-state-service")
+@Service
+@RequiredArgsConstructor
+public class FolderSyncStateService {
+
+    private final FolderSyncStateRepository syncStateRepository;
+    private final FolderSyncPartitionRepository partitionRepository;
+    private final Clock clock;
+
+    @Transactional(readOnly = true)
+    public Optional<FolderSyncState> findByFolderName(String folderName) {
+        return syncStateRepository.findByFolderName(folderName)
+                .map(entity -> new FolderSyncState(
+                        entity.getFolderName(),
+                        entity.getUidValidity(),
+                        entity.getLastSeenUid(),
+                        entity.getHighestModSeq()));
+    }
+
+    @Transactional
+    public void recordProgress(String folderName, long uidValidity, long lastSeenUid, Long highestModSeq) {
+        final var entity = syncStateRepository.findByFolderName(folderName)
+                .orElseGet(() -> FolderSyncStateEntity.builder().folderName(folderName).build());
+        entity.setUidValidity(uidValidity);
+        entity.setLastSeenUid(lastSeenUid);
+        entity.setHighestModSeq(highestModSeq);
+        entity.setLastSyncedAt(OffsetDateTime.now(clock));
+        syncStateRepository.save(entity);
+        log.debug(
+                "Recorded sync state for folder '{}' (uidValidity={}, lastSeenUid={}, highestModSeq={}).",
+                folderName,
+                uidValidity,
+                lastSeenUid,
+                highestModSeq);
+    }
+
+    /**
+     * Returns the partitions of an interrupted partitioned fetch. Partitions recorded under a different UIDVALIDITY
+     * describe UIDs that no longer exist and are dropped.
+     */
+    @Transactional
+    public List<PartitionCheckpoint> findPartitions(String folderName, long uidValidity) {
+        final var partitions = partitionRepository.findAllByFolderNameOrderByStartUid(folderName);
+        if (partitions.stream().anyMatch(partition -> partition.getUidValidity() != uidValidity)) {
+            log.info("Discarding partition checkpoints of folder '{}' recorded under another UIDVALIDITY.", folderName);
+            partitionRepository.deleteAllByFolderName(folderName);
+            return List.of();
+        }
+
+        return partitions.stream().map(FolderSyncStateService::toCheckpoint).toList();
+    }
+
+    @Transactional
+    public List<PartitionCheckpoint> createPartitions(String folderName, long uidValidity, List<UidRange> ranges) {
+        final var now = OffsetDateTime.now(clock);
+        final var entities = ranges.stream()
+                .map(range -> FolderSyncPartitionEntity.builder()
+                        .folderName(folderName)
+                        .uidValidity(uidValidity)
+                        .startUid(range.startUid())
+                        .endUid(range.endUid())
+                        .checkpointUid(range.startUid() - 1)
+                        .updatedAt(now)
+                        .build())
+                .toList();
+        return partitionRepository.saveAll(entities).stream().map(FolderSyncStateService::toCheckpoint).toList();
+    }
+
+    @Transactional
+    public void recordPartitionProgress(long partitionId, long checkpointUid) {
+        partitionRepository.advanceCheckpoint(partitionId, checkpointUid, OffsetDateTime.now(clock));
+    }
+
+    @Transactional
+    public void clearPartitions(String folderName) {
+        final var deleted = partitionRepository.deleteAllByFolderName(folderName);
+        log.debug("Removed {} partition checkpoints of folder '{}'.", deleted, folderName);
+    }
+
+    private static PartitionCheckpoint toCheckpoint(FolderSyncPartitionEntity entity) {
+        return new PartitionCheckpoint(entity.getId(), entity.getStartUid(), entity.getEndUid(), entity.getCheckpointUid());
+    }
+
+    public record UidRange(long startUid, long endUid) {}
+
+    public record PartitionCheckpoint(long id, long startUid, long endUid, long checkpointUid) {
+
+        public boolean completed() {
+            return checkpointUid >= endUid;
+        }
+    }
+
+    public record FolderSyncState(String folderName, long uidValidity, long lastSeenUid, Long highestModSeq) {}
+}
@@ -11,6 +11,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import com.github.sigmalko.protonmail.export.integration.eml.EmlEmailLoggingRunner;
 import com.github.sigmalko.protonmail.export.integration.gmail.GmailImapFetchRunner;
+import com.github.sigmalko.protonmail.export.integration.gmail.upload.GmailUploadRunner;
 
 @Slf4j(topic = "StartupActionsCoordinator")
 @Component
@@ -19,6 +20,7 @@ public class StartupActionsCoordinator {
 
     private final ObjectProvider<EmlEmailLoggingRunner> emlEmailLoggingRunnerProvider;
     private final ObjectProvider<GmailImapFetchRunner> gmailImapFetchRunnerProvider;
+    private final ObjectProvider<GmailUploadRunner> gmailUploadRunnerProvider;
 
     @Async
     @EventListener(ApplicationReadyEvent.class)
@@ -29,11 +31,13 @@ public class StartupActionsCoordinator {
         if (emlRunner == null) {
             log.debug("EmlEmailLoggingRunner bean is not available. Proceeding directly to GmailImapFetchRunner.");
             runGmailRunner(gmailRunner);
+            runUploadRunner(gmailUploadRunnerProvider.getIfAvailable());
             return;
         }
 
         if (executeEmlRunner(emlRunner)) {
             runGmailRunner(gmailRunner);
+            runUploadRunner(gmailUploadRunnerProvider.getIfAvailable());
         }
     }
 
@@ -59,4 +63,17 @@ public class StartupActionsCoordinator {
             log.error("GmailImapFetchRunner failed.", exception);
         }
     }
+
+    private void runUploadRunner(GmailUploadRunner uploadRunner) {
+        if (uploadRunner == null) {
+            log.debug("GmailUploadRunner bean is not available. Skipping Gmail upload.");
+            return;
+        }
+
+        try {
+            uploadRunner.run();
+        } catch (RuntimeException exception) {
+            log.error("GmailUploadRunner failed.", exception);
+        }
+    }
 }
@@ -0,0 +1,50 @@
+package com.github.sigmalko.protonmail.export.integration.eml;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Computes the SHA-256 of an EML file as stored on disk. The file is streamed through a per-thread direct buffer, so
+ * hashing large attachments does not allocate per file.
+ */
+@Component
+public class EmlContentHasher {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(CHUNK_SIZE));
+
+    public String hash(Path file) throws IOException {
+        final var digest = newDigest();
+        final var buffer = BUFFERS.get();
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (true) {
+                buffer.clear();
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+
+                buffer.flip();
+                digest.update(buffer);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not available.", exception);
+        }
+    }
+}
@@ -1,32 +1,33 @@
 package com.github.sigmalko.protonmail.export.integration.eml;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.Session;
-import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-import com.github.sigmalko.protonmail.export.domain.migration.MigrationRepository.MigrationStatus;
+import com.github.sigmalko.protonmail.export.domain.migration.MigrationRepository.MigrationFlags;
 import com.github.sigmalko.protonmail.export.domain.migration.MigrationService;
+import com.github.sigmalko.protonmail.export.domain.migration.MigrationService.FileMigration;
 import com.github.sigmalko.protonmail.export.domain.migration.MigrationService.MigrationFlag;
 import com.github.sigmalko.protonmail.export.domain.problem.ProblemService;
+import com.github.sigmalko.protonmail.export.domain.scan.EmlScanManifestRepository.FileFingerprint;
+import com.github.sigmalko.protonmail.export.domain.scan.EmlScanManifestService;
+import com.github.sigmalko.protonmail.export.domain.scan.EmlScanManifestService.ScannedFile;
 
 @Slf4j(topic = "EmlEmailLoggingRunner")
 @Component
@@ -34,12 +35,15 @@ import com.github.sigmalko.protonmail.export.domain.problem.ProblemService;
 @ConditionalOnProperty(prefix = "eml.reader", name = "enabled", havingValue = "true")
 public class EmlEmailLoggingRunner {
 
-    private static final Session MAIL_SESSION = Session.getInstance(new Properties());
     private static final int BATCH_SIZE = 1_000;
 
     private final EmlReaderProperties properties;
     private final MigrationService migrationService;
     private final ProblemService problemService;
+    private final EmlHeaderScanner headerScanner;
+    private final EmlContentHasher contentHasher;
+    private final EmlScanManifestService manifestService;
+    private final ProtonMetadataReader metadataReader;
 
     public void run() {
         log.info("##################################################");
@@ -88,88 +92,233 @@ public class EmlEmailLoggingRunner {
     }
 
     private void processDirectory(Path directory) {
-        try (final var files = Files.newDirectoryStream(directory, "*.eml")) {
-            final var batch = new ArrayList<Path>(BATCH_SIZE);
-            for (final var file : files) {
-                if (!Files.isRegularFile(file) || !Files.isReadable(file)) {
-                    continue;
-                }
+        final var fingerprints = properties.incrementalEnabled()
+                ? manifestService.loadFingerprints()
+                : Map.<String, FileFingerprint>of();
+        final var unchanged = new AtomicLong();
 
+        if (properties.pipelineEnabled()) {
+            processDirectoryInPipeline(directory, fingerprints, unchanged);
+        } else {
+            final var batch = new ArrayList<EmlFile>(BATCH_SIZE);
+            walkDirectory(directory, fingerprints, unchanged, file -> {
                 batch.add(file);
                 if (batch.size() >= BATCH_SIZE) {
                     processBatch(batch);
                     batch.clear();
                 }
-            }
+            });
 
             if (!batch.isEmpty()) {
                 processBatch(batch);
             }
+        }
+
+        if (properties.incrementalEnabled()) {
+            log.info("Skipped {} unchanged EML files recorded in the scan manifest.", unchanged.get());
+        }
+    }
+
+    private void processDirectoryInPipeline(
+            Path directory, Map<String, FileFingerprint> fingerprints, AtomicLong unchanged) {
+        log.info(
+                "Scanning EML files in pipeline mode (workers={}, queueCapacity={}).",
+                properties.pipelineWorkers(),
+                properties.pipelineQueueCapacity());
+
+        final var pipeline = new EmlScanPipeline<EmlFile, EmlEntry>(
+                properties.pipelineWorkers(),
+                properties.pipelineQueueCapacity(),
+                BATCH_SIZE,
+                this::readFile,
+                this::storeBatch);
+        final var summary = pipeline.run(sink -> walkDirectory(directory, fingerprints, unchanged, sink));
+
+        log.info(
+                "EML scan pipeline finished: walked={}, parsed={}, persisted={}.",
+                summary.walked(),
+                summary.parsed(),
+                summary.persisted());
+    }
+
+    private void walkDirectory(
+            Path directory,
+            Map<String, FileFingerprint> fingerprints,
+            AtomicLong unchanged,
+            Consumer<EmlFile> sink) {
+        try (final var files = Files.newDirectoryStream(directory, "*.eml")) {
+            for (final var file : files) {
+                final BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (IOException exception) {
+                    log.debug("Failed to read attributes of EML file {}. Skipping it.", file, exception);
+                    continue;
+                }
+
+                if (!attributes.isRegularFile() || !Files.isReadable(file)) {
+                    continue;
+                }
+
+                final var emlFile = new EmlFile(
+                        file, attributes.size(), attributes.lastModifiedTime().toMillis());
+                if (isUnchanged(emlFile, fingerprints)) {
+                    unchanged.incrementAndGet();
+                    continue;
+                }
+
+                sink.accept(emlFile);
+            }
         } catch (IOException exception) {
             log.error("Failed to read EML files from directory: {}", directory, exception);
         }
     }
 
-    private void processBatch(List<Path> batch) {
-        for (final var file : batch) {
-            processFile(file);
-        }
+    /**
+     * Entries recorded without a hash (with content hashing enabled) or without sidecar labels (with sidecars enabled)
+     * are scanned again once to fill them in.
+     */
+    private boolean isUnchanged(EmlFile file, Map<String, FileFingerprint> fingerprints) {
+        final var fingerprint = fingerprints.get(file.manifestKey());
+        return fingerprint != null
+                && (!properties.contentHashEnabled() || fingerprint.contentHashed())
+                && (!properties.sidecarEnabled() || fingerprint.labelsRead())
+                && fingerprint.fileSize() == file.size()
+                && fingerprint.fileModifiedMillis() == file.modifiedMillis();
+    }
+
+    private void processBatch(List<EmlFile> batch) {
+        storeBatch(batch.stream()
+                .map(this::readFile)
+                .flatMap(Optional::stream)
+                .toList());
     }
 
-    private void processFile(Path file) {
-        try (final var inputStream = Files.newInputStream(file)) {
-            final var message = new MimeMessage(MAIL_SESSION, inputStream);
-            final var messageId = readHeader(message, "Message-ID");
-            final var from = readHeader(message, "From");
-            final var date = readHeader(message, "Date");
-            final var messageDate = extractMessageDate(message);
-
-            log.info("Message-ID={}, From={}, Date={}", messageId, from, date);
-            if (!StringUtils.hasText(messageId)) {
-                log.debug("Skipping EML file {} because it does not contain Message-ID header.", file);
-                problemService.logFileProblem(
-                        file.getFileName().toString(),
-                        messageDate,
-                        from,
-                        "Missing Message-ID header in EML file " + file);
-                return;
+    private void storeBatch(List<EmlEntry> batch) {
+        final var stored = new ArrayList<EmlEntry>(batch.size());
+        final var withMessageId = new ArrayList<EmlEntry>(batch.size());
+        for (final var entry : batch) {
+            if (StringUtils.hasText(entry.messageId())) {
+                withMessageId.add(entry);
+            } else if (logMissingMessageId(entry)) {
+                stored.add(entry);
             }
+        }
+        stored.addAll(storeMigrationEntries(withMessageId));
 
-            storeMigrationEntry(messageId, messageDate);
-        } catch (MessagingException | IOException exception) {
-            log.error("Failed to process EML file: {}", file, exception);
+        // Recorded even without incremental scans: the manifest is also the Message-ID to file index used for uploads.
+        final var scannedFiles = stored.stream()
+                .map(entry -> new ScannedFile(
+                        entry.file().manifestKey(),
+                        entry.file().size(),
+                        entry.file().modifiedMillis(),
+                        StringUtils.hasText(entry.messageId()) ? entry.messageId() : null,
+                        entry.contentHash(),
+                        entry.labelIds()))
+                .toList();
+        try {
+            manifestService.recordScannedFiles(scannedFiles);
+        } catch (RuntimeException exception) {
+            log.warn("Failed to record {} EML files in the scan manifest.", scannedFiles.size(), exception);
         }
     }
 
-    private String readHeader(MimeMessage message, String headerName) throws MessagingException {
-        final var header = message.getHeader(headerName, ", ");
-        return header != null ? header.strip() : "";
+    private List<EmlEntry> storeMigrationEntries(List<EmlEntry> entries) {
+        if (entries.isEmpty()) {
+            return List.of();
+        }
+
+        try {
+            final var result = migrationService.upsertFileMigrations(entries.stream()
+                    .map(entry -> new FileMigration(entry.messageId(), entry.messageDate()))
+                    .toList());
+            log.info(
+                    "Stored {} EML migration entries (inserted={}, updated={}, unchanged={}).",
+                    entries.size(),
+                    result.inserted(),
+                    result.updated(),
+                    result.unchanged());
+            return entries;
+        } catch (RuntimeException exception) {
+            log.warn(
+                    "Bulk upsert of {} EML migration entries failed. Falling back to per-message writes.",
+                    entries.size(),
+                    exception);
+            return entries.stream()
+                    .filter(entry -> storeMigrationEntry(entry.messageId(), entry.messageDate()))
+                    .toList();
+        }
     }
 
-    private OffsetDateTime extractMessageDate(MimeMessage message) throws MessagingException {
-        final var sentDate = message.getSentDate();
-        if (sentDate == null) {
-            return null;
+    private Optional<EmlEntry> readFile(EmlFile file) {
+        try {
+            // Hashing reads the whole file, while headers and sidecars are read partially; hence opt-in.
+            final var contentHash = properties.contentHashEnabled() ? contentHasher.hash(file.path()) : null;
+            if (properties.sidecarEnabled()) {
+                final var metadata = metadataReader.read(file.path());
+                if (metadata.isPresent()) {
+                    final var value = metadata.get();
+                    log.info(
+                            "Message-ID={}, From={}, Date={} (sidecar)",
+                            value.messageId(),
+                            value.from(),
+                            value.messageDate());
+                    return Optional.of(new EmlEntry(
+                            file,
+                            value.messageId(),
+                            value.from(),
+                            value.messageDate(),
+                            contentHash,
+                            value.labelIds()));
+                }
+            }
+
+            final var headers = headerScanner.scan(file.path());
+
+            log.info("Message-ID={}, From={}, Date={}", headers.messageId(), headers.from(), headers.date());
+            // Without a usable sidecar there are no labels; empty rather than null so the file is not rescanned for them.
+            final List<String> labelIds = properties.sidecarEnabled() ? List.of() : null;
+            return Optional.of(new EmlEntry(
+                    file, headers.messageId(), headers.from(), headers.messageDate(), contentHash, labelIds));
+        } catch (IOException exception) {
+            log.error("Failed to process EML file: {}", file.path(), exception);
+            return Optional.empty();
         }
+    }
 
-        return OffsetDateTime.ofInstant(sentDate.toInstant(), ZoneOffset.UTC);
+    private boolean logMissingMessageId(EmlEntry entry) {
+        final var path = entry.file().path();
+        log.debug("Skipping EML file {} because it does not contain Message-ID header.", path);
+        try {
+            problemService.logFileProblem(
+                    path.getFileName().toString(),
+                    entry.messageDate(),
+                    entry.from(),
+                    "Missing Message-ID header in EML file " + path);
+            return true;
+        } catch (RuntimeException exception) {
+            log.warn("Failed to log missing Message-ID problem for EML file {}.", path, exception);
+            return false;
+        }
     }
 
-    private void storeMigrationEntry(String messageId, OffsetDateTime messageDate) {
+    private boolean storeMigrationEntry(String messageId, OffsetDateTime messageDate) {
         try {
-            migrationService.findByMessageId(messageId)
+            migrationService.findFlagsByMessageId(messageId)
                     .ifPresentOrElse(
                             this::markMessageAsStoredInFile,
                             () -> migrationService.createFileMigration(messageId, messageDate));
+            return true;
         } catch (Exception exception) {
             log.warn(
                     "Failed to persist migration entry for messageId={} originating from EML file.",
                     messageId,
                     exception);
+            return false;
         }
     }
 
-    private void markMessageAsStoredInFile(MigrationStatus status) {
+    private void markMessageAsStoredInFile(MigrationFlags status) {
         if (status.messageInFile()) {
             return;
         }
@@ -177,4 +326,20 @@ public class EmlEmailLoggingRunner {
         migrationService.updateFlagByMessageId(
                 status.messageId(), MigrationFlag.MESSAGE_IN_FILE, true);
     }
+
+    private record EmlFile(Path path, long size, long modifiedMillis) {
+
+        private String manifestKey() {
+            return path.toAbsolutePath().normalize().toString();
+        }
+    }
+
+    private record EmlEntry(
+            EmlFile file,
+            String messageId,
+            String from,
+            OffsetDateTime messageDate,
+            String contentHash,
+            List<String> labelIds) {
+    }
 }
@@ -0,0 +1,193 @@
+package com.github.sigmalko.protonmail.export.integration.eml;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import org.springframework.stereotype.Component;
+
+import jakarta.mail.internet.MailDateFormat;
+import jakarta.mail.internet.MimeUtility;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads Message-ID, From and Date from an EML file without touching the message body. The file is consumed in
+ * small chunks through a per-thread buffer and reading stops at the first blank line, so memory use does not depend
+ * on attachment size. Folded header lines are unfolded and RFC 2047 encoded words in From are decoded.
+ */
+@Slf4j(topic = "EmlEmailLoggingRunner")
+@Component
+public class EmlHeaderScanner {
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final int MAX_FIELD_SIZE = 64 * 1024;
+    private static final long MAX_HEADER_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<ScanBuffers> BUFFERS = ThreadLocal.withInitial(ScanBuffers::new);
+
+    public EmlHeaders scan(Path file) throws IOException {
+        final var buffers = BUFFERS.get();
+        final var chunk = buffers.chunk;
+        final var state = new ScanState(buffers);
+
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long consumed = 0;
+            while (!state.finished && consumed < MAX_HEADER_SIZE) {
+                chunk.clear();
+                final var read = channel.read(chunk);
+                if (read < 0) {
+                    break;
+                }
+
+                chunk.flip();
+                while (chunk.hasRemaining() && !state.finished) {
+                    state.accept(chunk.get());
+                }
+                consumed += read;
+            }
+        }
+
+        state.completeField();
+        if (!state.finished) {
+            log.debug("EML file {} has no header/body separator within the first {} bytes.", file, MAX_HEADER_SIZE);
+        }
+        return new EmlHeaders(
+                nullToEmpty(state.messageId),
+                decodeText(nullToEmpty(state.from)),
+                nullToEmpty(state.date),
+                parseDate(state.date));
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private static String decodeText(String value) {
+        if (value.indexOf("=?") < 0) {
+            return value;
+        }
+
+        try {
+            return MimeUtility.decodeText(value);
+        } catch (UnsupportedEncodingException exception) {
+            log.debug("Failed to decode RFC 2047 header value '{}'. Using raw value.", value, exception);
+            return value;
+        }
+    }
+
+    private static OffsetDateTime parseDate(String date) {
+        if (date == null || date.isBlank()) {
+            return null;
+        }
+
+        try {
+            final var parsed = new MailDateFormat().parse(date);
+            return OffsetDateTime.ofInstant(parsed.toInstant(), ZoneOffset.UTC);
+        } catch (ParseException exception) {
+            log.debug("Failed to parse Date header '{}'.", date);
+            return null;
+        }
+    }
+
+    public record EmlHeaders(String messageId, String from, String date, OffsetDateTime messageDate) {
+    }
+
+    private static final class ScanBuffers {
+
+        private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        private byte[] field = new byte[1024];
+    }
+
+    private static final class ScanState {
+
+        private final ScanBuffers buffers;
+        private int fieldLength;
+        private int lineLength;
+        private boolean atLineStart = true;
+        private boolean finished;
+        private String messageId;
+        private String from;
+        private String date;
+
+        private ScanState(ScanBuffers buffers) {
+            this.buffers = buffers;
+        }
+
+        private void accept(byte value) {
+            if (value == '\r') {
+                return;
+            }
+
+            if (value == '\n') {
+                if (lineLength == 0) {
+                    finished = true;
+                }
+                lineLength = 0;
+                atLineStart = true;
+                return;
+            }
+
+            if (atLineStart) {
+                atLineStart = false;
+                if (value != ' ' && value != '\t') {
+                    completeField();
+                }
+            }
+
+            lineLength++;
+            append(value);
+        }
+
+        private void append(byte value) {
+            if (fieldLength == buffers.field.length) {
+                if (fieldLength >= MAX_FIELD_SIZE) {
+                    return;
+                }
+                buffers.field = Arrays.copyOf(buffers.field, Math.min(fieldLength * 2, MAX_FIELD_SIZE));
+            }
+            buffers.field[fieldLength++] = value;
+        }
+
+        private void completeField() {
+            if (fieldLength == 0) {
+                return;
+            }
+
+            final var field = buffers.field;
+            var colon = -1;
+            for (var i = 0; i < fieldLength; i++) {
+                if (field[i] == ':') {
+                    colon = i;
+                    break;
+                }
+            }
+
+            if (colon > 0) {
+                final var name = new String(field, 0, colon, StandardCharsets.US_ASCII).strip();
+                if (messageId == null && name.equalsIgnoreCase("Message-ID")) {
+                    messageId = valueOf(field, colon);
+                } else if (from == null && name.equalsIgnoreCase("From")) {
+                    from = valueOf(field, colon);
+                } else if (date == null && name.equalsIgnoreCase("Date")) {
+                    date = valueOf(field, colon);
+                }
+            }
+            fieldLength = 0;
+            if (messageId != null && from != null && date != null) {
+                finished = true;
+            }
+        }
+
+        private String valueOf(byte[] field, int colon) {
+            return new String(field, colon + 1, fieldLength - colon - 1, StandardCharsets.UTF_8).strip();
+        }
+    }
+}
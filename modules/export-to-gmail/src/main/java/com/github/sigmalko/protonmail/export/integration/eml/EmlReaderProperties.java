@@ -6,5 +6,11 @@ import org.springframework.boot.context.properties.bind.DefaultValue;
 @ConfigurationProperties(prefix = "eml.reader")
 public record EmlReaderProperties(
         @DefaultValue("false") boolean enabled,
-        String directory) {
+        String directory,
+        @DefaultValue("true") boolean incrementalEnabled,
+        @DefaultValue("false") boolean contentHashEnabled,
+        @DefaultValue("false") boolean sidecarEnabled,
+        @DefaultValue("false") boolean pipelineEnabled,
+        @DefaultValue("8") int pipelineWorkers,
+        @DefaultValue("1000") int pipelineQueueCapacity) {
 }
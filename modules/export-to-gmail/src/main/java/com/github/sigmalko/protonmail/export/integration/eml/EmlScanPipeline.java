@@ -0,0 +1,196 @@
+package com.github.sigmalko.protonmail.export.integration.eml;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Three-stage scan pipeline: a single directory walker, a bounded set of virtual-thread parsers and a single
+ * batching persistence stage running on the caller thread. Stages are connected with bounded queues, so a slow
+ * persistence stage throttles parsing and a slow parser pool throttles the walker.
+ */
+@Slf4j(topic = "EmlEmailLoggingRunner")
+final class EmlScanPipeline<S, T> {
+
+    private static final Duration OFFER_TIMEOUT = Duration.ofMillis(200);
+
+    private final int workers;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final Function<S, Optional<T>> parser;
+    private final Consumer<List<T>> batchConsumer;
+
+    EmlScanPipeline(
+            int workers,
+            int queueCapacity,
+            int batchSize,
+            Function<S, Optional<T>> parser,
+            Consumer<List<T>> batchConsumer) {
+        this.workers = Math.max(1, workers);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.parser = parser;
+        this.batchConsumer = batchConsumer;
+    }
+
+    /**
+     * Runs the pipeline until the walker is exhausted and every parsed entry was handed to the batch consumer.
+     *
+     * @param walker feeds discovered files to the supplied sink; it runs on its own thread
+     */
+    PipelineSummary run(Consumer<Consumer<S>> walker) {
+        final BlockingQueue<Optional<S>> paths = new ArrayBlockingQueue<>(queueCapacity);
+        final BlockingQueue<Optional<T>> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        final var cancelled = new AtomicBoolean();
+        final var walked = new AtomicLong();
+        final var parsedCount = new AtomicLong();
+        final var activeParsers = new AtomicInteger(workers);
+
+        Thread.ofVirtual().name("eml-walker").start(() -> {
+            try {
+                walker.accept(path -> {
+                    if (!offer(paths, Optional.of(path), cancelled)) {
+                        throw new CancellationException("EML scan pipeline was cancelled.");
+                    }
+                    walked.incrementAndGet();
+                });
+            } catch (CancellationException exception) {
+                log.debug("EML directory walker stopped because the pipeline was cancelled.");
+            } catch (RuntimeException exception) {
+                log.error("EML directory walker failed.", exception);
+            } finally {
+                for (var i = 0; i < workers; i++) {
+                    offer(paths, Optional.empty(), cancelled);
+                }
+            }
+        });
+
+        final var parserFactory = Thread.ofVirtual().name("eml-parser-", 0).factory();
+        long persisted = 0;
+        try (final var parsers = Executors.newThreadPerTaskExecutor(parserFactory)) {
+            for (var i = 0; i < workers; i++) {
+                parsers.submit(() -> parseUntilExhausted(paths, parsed, cancelled, parsedCount, activeParsers));
+            }
+
+            try {
+                persisted = persistUntilExhausted(parsed);
+            } catch (InterruptedException exception) {
+                cancelled.set(true);
+                Thread.currentThread().interrupt();
+                log.warn("EML scan pipeline was interrupted.");
+            } catch (RuntimeException exception) {
+                cancelled.set(true);
+                throw exception;
+            }
+        }
+
+        return new PipelineSummary(walked.get(), parsedCount.get(), persisted);
+    }
+
+    private void parseUntilExhausted(
+            BlockingQueue<Optional<S>> paths,
+            BlockingQueue<Optional<T>> parsed,
+            AtomicBoolean cancelled,
+            AtomicLong parsedCount,
+            AtomicInteger activeParsers) {
+        try {
+            while (!cancelled.get()) {
+                final var next = paths.poll(OFFER_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                if (next == null) {
+                    continue;
+                }
+                if (next.isEmpty()) {
+                    return;
+                }
+
+                final Optional<T> result;
+                try {
+                    result = parser.apply(next.get());
+                } catch (RuntimeException exception) {
+                    // One unreadable file must not stop this worker, otherwise the scan ends early and looks complete.
+                    log.warn("Skipping {} because parsing failed.", next.get(), exception);
+                    continue;
+                }
+                if (result.isPresent() && offer(parsed, result, cancelled)) {
+                    parsedCount.incrementAndGet();
+                }
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (activeParsers.decrementAndGet() == 0) {
+                offer(parsed, Optional.empty(), cancelled);
+                // Nobody drains the path queue any more; release a walker still blocked on it.
+                cancelled.set(true);
+            }
+        }
+    }
+
+    private long persistUntilExhausted(BlockingQueue<Optional<T>> parsed) throws InterruptedException {
+        final var batch = new ArrayList<T>(batchSize);
+        final var drained = new ArrayList<Optional<T>>(batchSize);
+        long persisted = 0;
+
+        while (true) {
+            drained.add(parsed.take());
+            parsed.drainTo(drained, batchSize - 1);
+
+            var finished = false;
+            for (final var item : drained) {
+                if (item.isEmpty()) {
+                    finished = true;
+                    continue;
+                }
+
+                batch.add(item.get());
+                if (batch.size() >= batchSize) {
+                    batchConsumer.accept(List.copyOf(batch));
+                    persisted += batch.size();
+                    batch.clear();
+                }
+            }
+            drained.clear();
+
+            if (finished) {
+                if (!batch.isEmpty()) {
+                    batchConsumer.accept(List.copyOf(batch));
+                    persisted += batch.size();
+                }
+                return persisted;
+            }
+        }
+    }
+
+    /**
+     * Blocks until the element is queued or the pipeline is cancelled, which keeps upstream stages from hanging on
+     * a full queue once downstream stages are gone.
+     */
+    private static <E> boolean offer(BlockingQueue<E> queue, E element, AtomicBoolean cancelled) {
+        try {
+            while (!cancelled.get()) {
+                if (queue.offer(element, OFFER_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    record PipelineSummary(long walked, long parsed, long persisted) {
+    }
+}
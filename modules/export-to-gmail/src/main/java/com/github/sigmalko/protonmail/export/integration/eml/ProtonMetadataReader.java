@@ -0,0 +1,167 @@
+package com.github.sigmalko.protonmail.export.integration.eml;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads the metadata sidecar written by the Proton Mail Export Tool next to every EML file ({@code <name>.metadata.json},
+ * or {@code <name>.json} in older exports) with a streaming parser. Only the fields needed for the migration index
+ * are extracted; attachments and address lists are skipped without being materialised.
+ */
+@Slf4j(topic = "EmlEmailLoggingRunner")
+@Component
+@RequiredArgsConstructor
+public class ProtonMetadataReader {
+
+    private static final List<String> SIDECAR_SUFFIXES = List.of(".metadata.json", ".json");
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Reads the sidecar of the EML file. Its {@code Size} is the size Proton stores server-side, not the size of the
+     * exported file, so it is not read; changed files are detected by the size and modification time kept in the scan
+     * manifest, which rescans the EML file and its sidecar together.
+     */
+    public Optional<ProtonMetadata> read(Path emlFile) {
+        final var sidecar = resolveSidecar(emlFile);
+        if (sidecar.isEmpty()) {
+            return Optional.empty();
+        }
+
+        try (final var parser = objectMapper.getFactory().createParser(sidecar.get().toFile())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                log.debug("Metadata sidecar {} does not contain a JSON object.", sidecar.get());
+                return Optional.empty();
+            }
+
+            final var builder = new MetadataBuilder();
+            readObject(parser, builder);
+            return builder.build(sidecar.get());
+        } catch (IOException exception) {
+            log.debug("Failed to read metadata sidecar {}.", sidecar.get(), exception);
+            return Optional.empty();
+        }
+    }
+
+    private Optional<Path> resolveSidecar(Path emlFile) {
+        final var fileName = emlFile.getFileName().toString();
+        final var baseName = fileName.endsWith(".eml") ? fileName.substring(0, fileName.length() - 4) : fileName;
+        return SIDECAR_SUFFIXES.stream()
+                .map(suffix -> emlFile.resolveSibling(baseName + suffix))
+                .filter(Files::isRegularFile)
+                .findFirst();
+    }
+
+    private void readObject(JsonParser parser, MetadataBuilder builder) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final var field = parser.currentName();
+            final var value = parser.nextToken();
+            switch (field) {
+                case "Payload" -> {
+                    if (value == JsonToken.START_OBJECT) {
+                        readObject(parser, builder);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                case "ExternalID" -> builder.externalId = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                case "Time" -> builder.time = value.isNumeric() ? parser.getLongValue() : null;
+                case "Sender" -> readSender(parser, value, builder);
+                case "LabelIDs" -> readLabels(parser, value, builder);
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private void readSender(JsonParser parser, JsonToken value, MetadataBuilder builder) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final var field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "Name" -> builder.senderName = parser.getValueAsString();
+                case "Address" -> builder.senderAddress = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private void readLabels(JsonParser parser, JsonToken value, MetadataBuilder builder) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                builder.labelIds.add(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    public record ProtonMetadata(
+            String messageId,
+            OffsetDateTime messageDate,
+            String from,
+            List<String> labelIds) {
+    }
+
+    private static final class MetadataBuilder {
+
+        private String externalId;
+        private Long time;
+        private String senderName;
+        private String senderAddress;
+        private final List<String> labelIds = new ArrayList<>();
+
+        private Optional<ProtonMetadata> build(Path sidecar) {
+            if (!StringUtils.hasText(externalId) || time == null || time <= 0) {
+                log.debug("Metadata sidecar {} lacks ExternalID or Time; falling back to EML headers.", sidecar);
+                return Optional.empty();
+            }
+
+            return Optional.of(new ProtonMetadata(
+                    normalizeMessageId(externalId),
+                    OffsetDateTime.ofInstant(Instant.ofEpochSecond(time), ZoneOffset.UTC),
+                    formatSender(),
+                    List.copyOf(labelIds)));
+        }
+
+        // Proton stores the Message-ID without angle brackets, Gmail and the EML header keep them.
+        private static String normalizeMessageId(String value) {
+            final var stripped = value.strip();
+            return stripped.startsWith("<") ? stripped : "<" + stripped + ">";
+        }
+
+        private String formatSender() {
+            if (!StringUtils.hasText(senderAddress)) {
+                return StringUtils.hasText(senderName) ? senderName : "";
+            }
+
+            return StringUtils.hasText(senderName) ? senderName + " <" + senderAddress + ">" : senderAddress;
+        }
+    }
+}
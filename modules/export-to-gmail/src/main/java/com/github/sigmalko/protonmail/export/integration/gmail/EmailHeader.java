@@ -1,11 +1,14 @@
 package com.github.sigmalko.protonmail.export.integration.gmail;
 
 import java.time.Instant;
+import java.util.List;
 
 public record EmailHeader(
         int messageNumber,
         String messageId,
         Instant sentAt,
-        String from
+        String from,
+        Long gmailMessageId,
+        List<String> labels
 ) {
 }
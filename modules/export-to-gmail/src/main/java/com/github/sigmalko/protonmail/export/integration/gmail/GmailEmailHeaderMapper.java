@@ -1,21 +1,54 @@
 package com.github.sigmalko.protonmail.export.integration.gmail;
 
 import jakarta.mail.Address;
+import jakarta.mail.FetchProfile;
 import jakarta.mail.Message;
 import jakarta.mail.MessagingException;
+import jakarta.mail.internet.AddressException;
 import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MailDateFormat;
+import java.text.ParseException;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.gimap.GmailFolder;
+import org.eclipse.angus.mail.gimap.GmailMessage;
+import org.eclipse.angus.mail.imap.IMAPFolder;
 import org.springframework.stereotype.Component;
 
+/**
+ * Maps IMAP messages to {@link EmailHeader}s using only the header fields and INTERNALDATE requested by
+ * {@link #fetchProfile()}, so mapping a prefetched window does not issue further FETCH commands. On the gimap
+ * provider the Gmail message id and labels are prefetched and mapped as well.
+ */
 @Slf4j(topic = "GMAIL")
 @Component
 public class GmailEmailHeaderMapper {
 
+        private static final String MESSAGE_ID = "Message-ID";
+        private static final String DATE = "Date";
+        private static final String FROM = "From";
+
+        /**
+         * Fetches {@code BODY.PEEK[HEADER.FIELDS (MESSAGE-ID DATE FROM)]} and INTERNALDATE in a single command, plus
+         * {@code X-GM-MSGID} and {@code X-GM-LABELS} when the folder is a {@link GmailFolder}; plain IMAP folders
+         * ignore the Gmail items.
+         */
+        public FetchProfile fetchProfile() {
+                final var fetchProfile = new FetchProfile();
+                fetchProfile.add(MESSAGE_ID);
+                fetchProfile.add(DATE);
+                fetchProfile.add(FROM);
+                fetchProfile.add(IMAPFolder.FetchProfileItem.INTERNALDATE);
+                fetchProfile.add(GmailFolder.FetchProfileItem.MSGID);
+                fetchProfile.add(GmailFolder.FetchProfileItem.LABELS);
+                return fetchProfile;
+        }
+
         public void map(Message message, Consumer<? super EmailHeader> consumer) {
                 map(message).ifPresent(consumer);
         }
@@ -26,17 +59,52 @@ public class GmailEmailHeaderMapper {
                 try {
                         return Optional.of(new EmailHeader(
                                         messageNumber,
-                                        firstHeaderValue(message, "Message-ID"),
+                                        firstHeaderValue(message, MESSAGE_ID),
                                         resolveSentAt(message),
-                                        formatAddresses(message.getFrom())));
+                                        formatAddresses(parseFrom(message)),
+                                        message instanceof GmailMessage gmailMessage ? gmailMessage.getMsgId() : null,
+                                        resolveLabels(message)));
                 } catch (MessagingException exception) {
                         log.warn("Failed to extract headers for message {}.", messageNumber, exception);
                         return Optional.empty();
                 }
         }
 
+        // Message#getSentDate and #getFrom would load the ENVELOPE, so the prefetched header values are parsed here.
         private Instant resolveSentAt(Message message) throws MessagingException {
-                return message.getSentDate() != null ? message.getSentDate().toInstant() : null;
+                final var date = firstHeaderValue(message, DATE);
+                if (date != null) {
+                        try {
+                                return new MailDateFormat().parse(date).toInstant();
+                        } catch (ParseException exception) {
+                                log.debug("Failed to parse Date header '{}' of message {}.", date, message.getMessageNumber());
+                        }
+                }
+
+                return message.getReceivedDate() != null ? message.getReceivedDate().toInstant() : null;
+        }
+
+        private List<String> resolveLabels(Message message) throws MessagingException {
+                if (!(message instanceof GmailMessage gmailMessage)) {
+                        return List.of();
+                }
+
+                final var labels = gmailMessage.getLabels();
+                return labels != null ? List.of(labels) : List.of();
+        }
+
+        private Address[] parseFrom(Message message) throws MessagingException {
+                final var from = firstHeaderValue(message, FROM);
+                if (from == null) {
+                        return null;
+                }
+
+                try {
+                        return InternetAddress.parseHeader(from, false);
+                } catch (AddressException exception) {
+                        log.debug("Failed to parse From header '{}' of message {}.", from, message.getMessageNumber());
+                        return null;
+                }
         }
 
         private String firstHeaderValue(Message message, String headerName) throws MessagingException {
@@ -1,8 +1,15 @@
 package com.github.sigmalko.protonmail.export.integration.gmail;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.function.Consumer;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
 
 import jakarta.mail.Folder;
 import jakarta.mail.MessagingException;
@@ -10,101 +17,222 @@ import jakarta.mail.Store;
 
 import lombok.extern.slf4j.Slf4j;
 
+import org.eclipse.angus.mail.iap.ParsingException;
+import org.eclipse.angus.mail.iap.ProtocolException;
+import org.eclipse.angus.mail.iap.Response;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.eclipse.angus.mail.imap.protocol.IMAPProtocol;
+import org.eclipse.angus.mail.imap.protocol.IMAPResponse;
+import org.eclipse.angus.mail.imap.protocol.ListInfo;
+import org.eclipse.angus.mail.imap.protocol.Status;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import com.github.sigmalko.protonmail.export.integration.gmail.GmailFolderTopology.FolderEntry;
+
+/**
+ * Discovers the Gmail folder tree in a single pass and caches it as an immutable {@link GmailFolderTopology} for
+ * {@code gmail.imap.topology-ttl}. Servers announcing LIST-STATUS (RFC 5819, Gmail does) return the folder list and
+ * the STATUS counters of every folder in one round-trip; other servers get one LIST plus one STATUS per folder.
+ */
 @Slf4j(topic = "GMAIL")
 @Component
 public class GmailFolderExplorer {
 
-        public void logFolderTopology(Store store) {
+        private static final String ALL_MAIL_ATTRIBUTE = "\\All";
+        private static final String[] STATUS_ITEMS = {"MESSAGES", "UIDNEXT", "UIDVALIDITY"};
+        private static final String LIST_STATUS_COMMAND = "LIST \"\" \"*\" RETURN (STATUS (MESSAGES UIDNEXT UIDVALIDITY))";
+
+        private final Duration topologyTtl;
+        private final Clock clock;
+        // Discovery runs under its own lock, so readers of the cached snapshot never wait for network I/O.
+        private final ReentrantLock discoveryLock = new ReentrantLock();
+        private volatile GmailFolderTopology cachedTopology;
+
+        public GmailFolderExplorer(GmailImapProperties properties, Clock clock) {
+                this.topologyTtl = properties.topologyTtl();
+                this.clock = clock;
+        }
+
+        /**
+         * Returns the cached topology, discovering it over the given store once the cached snapshot expired. Concurrent
+         * callers wait for a single discovery.
+         */
+        public GmailFolderTopology topology(Store store) throws MessagingException {
+                final var cached = freshTopology();
+                if (cached.isPresent()) {
+                        return cached.get();
+                }
+
+                discoveryLock.lock();
                 try {
-                        final var defaultFolder = resolveDefaultFolder(store);
-                        if (defaultFolder == null) {
-                                return;
-                        }
+                        return refresh(store);
+                } finally {
+                        discoveryLock.unlock();
+                }
+        }
+
+        /** Like {@link #topology(Store)}, but returns nothing instead of waiting for a discovery already running. */
+        public Optional<GmailFolderTopology> tryTopology(Store store) throws MessagingException {
+                final var cached = freshTopology();
+                if (cached.isPresent()) {
+                        return cached;
+                }
+
+                if (!discoveryLock.tryLock()) {
+                        return Optional.empty();
+                }
+                try {
+                        return Optional.of(refresh(store));
+                } finally {
+                        discoveryLock.unlock();
+                }
+        }
+
+        public Optional<GmailFolderTopology> freshTopology() {
+                final var cached = cachedTopology;
+                return isFresh(cached, clock.instant()) ? Optional.of(cached) : Optional.empty();
+        }
+
+        private GmailFolderTopology refresh(Store store) throws MessagingException {
+                final var now = clock.instant();
+                // Another caller may have refreshed the snapshot while this one waited for the lock.
+                final var cached = cachedTopology;
+                if (isFresh(cached, now)) {
+                        return cached;
+                }
+
+                final var discovered = discover(store, now);
+                cachedTopology = discovered;
+                return discovered;
+        }
 
-                        log.info("Gmail folder topology:");
-                        visitFolderRecursively(defaultFolder, 0, descriptor -> log.info(
+        private boolean isFresh(GmailFolderTopology topology, Instant now) {
+                return topology != null && topology.discoveredAt().plus(topologyTtl).isAfter(now);
+        }
+
+        public void logFolderTopology(GmailFolderTopology topology) {
+                log.info("Gmail folder topology:");
+                for (final var folder : topology.folders()) {
+                        log.info(
                                         "{}- {} (messages: {})",
-                                        "  ".repeat(descriptor.depth()),
-                                        descriptor.displayName(),
-                                        descriptor.messageCountDescription()));
-                } catch (MessagingException exception) {
-                        log.warn("Failed to log Gmail folder topology.", exception);
+                                        "  ".repeat(folder.depth()),
+                                        folder.fullName(),
+                                        folder.holdsMessages() && folder.messageCount() != null ? folder.messageCount() : "n/a");
                 }
         }
 
         public List<String> collectReadableFolders(Store store) throws MessagingException {
-                final var defaultFolder = resolveDefaultFolder(store);
-                if (defaultFolder == null) {
-                        return List.of();
+                return topology(store).readableFolders();
+        }
+
+        /**
+         * Finds the folder carrying the {@code \All} special-use attribute, i.e. Gmail's "All Mail" folder whose
+         * name depends on the account locale.
+         */
+        public Optional<String> findAllMailFolder(Store store) throws MessagingException {
+                return topology(store).findByAttribute(ALL_MAIL_ATTRIBUTE).map(FolderEntry::fullName);
+        }
+
+        private GmailFolderTopology discover(Store store, Instant now) throws MessagingException {
+                if (!(store.getDefaultFolder() instanceof IMAPFolder defaultFolder)) {
+                        log.warn("Gmail store is not an IMAP store; folder topology is empty.");
+                        return new GmailFolderTopology(List.of(), now);
                 }
 
-                final var readableFolders = new ArrayList<String>();
-                visitFolderRecursively(defaultFolder, 0, descriptor -> {
-                        if (descriptor.holdsMessages() && !"(root)".equals(descriptor.displayName())) {
-                                readableFolders.add(descriptor.displayName());
+                final var listStatus = store instanceof IMAPStore imapStore && imapStore.hasCapability("LIST-STATUS");
+                final var folders = (List<?>) defaultFolder.doCommand(protocol -> {
+                        if (listStatus) {
+                                try {
+                                        return listWithStatus(protocol);
+                                } catch (ProtocolException exception) {
+                                        log.debug("LIST-STATUS failed; falling back to LIST and STATUS.", exception);
+                                }
                         }
+                        return listThenStatus(protocol);
                 });
-                return readableFolders;
-        }
 
-        private Folder resolveDefaultFolder(Store store) throws MessagingException {
-                final var defaultFolder = store.getDefaultFolder();
-                if (defaultFolder == null) {
-                        log.warn("Unable to access Gmail folders because the default folder is null.");
-                }
-                return defaultFolder;
+                final var topology = new GmailFolderTopology(
+                                folders.stream().map(FolderEntry.class::cast).toList(),
+                                now);
+                log.info(
+                                "Discovered {} Gmail folders ({} readable) using {}.",
+                                topology.folders().size(),
+                                topology.readableFolders().size(),
+                                listStatus ? "LIST-STATUS" : "LIST and STATUS");
+                return topology;
         }
 
-        private void visitFolderRecursively(Folder folder, int depth, Consumer<FolderDescriptor> visitor)
-                        throws MessagingException {
-                final var descriptor = buildFolderDescriptor(folder, depth);
-                visitor.accept(descriptor);
+        private List<FolderEntry> listWithStatus(IMAPProtocol protocol) throws ProtocolException {
+                final var responses = protocol.command(LIST_STATUS_COMMAND, null);
+                protocol.handleResult(responses[responses.length - 1]);
 
-                if (!descriptor.holdsFolders()) {
-                        return;
-                }
+                final var lists = new ArrayList<ListInfo>();
+                final var statuses = new HashMap<String, Status>();
+                for (final Response response : responses) {
+                        if (!(response instanceof IMAPResponse imapResponse)) {
+                                continue;
+                        }
 
-                try {
-                        for (final var child : folder.list()) {
-                                visitFolderRecursively(child, depth + 1, visitor);
+                        try {
+                                if (imapResponse.keyEquals("LIST")) {
+                                        lists.add(new ListInfo(imapResponse));
+                                } else if (imapResponse.keyEquals("STATUS")) {
+                                        final var status = new Status(imapResponse);
+                                        statuses.put(status.mbox, status);
+                                }
+                        } catch (ParsingException exception) {
+                                log.debug("Skipping unparsable LIST-STATUS response '{}'.", response, exception);
                         }
-                } catch (MessagingException exception) {
-                        log.warn("Failed to enumerate children for folder {}.", descriptor.displayName(), exception);
                 }
+                return toEntries(lists, statuses);
         }
 
-        private FolderDescriptor buildFolderDescriptor(Folder folder, int depth) {
-                final var folderName = resolveFolderDisplayName(folder);
-
-                int folderType = Folder.HOLDS_FOLDERS | Folder.HOLDS_MESSAGES;
-                try {
-                        folderType = folder.getType();
-                } catch (MessagingException exception) {
-                        log.warn(
-                                        "Failed to determine folder type for {}. Assuming it may contain sub-folders.",
-                                        folderName,
-                                        exception);
+        private List<FolderEntry> listThenStatus(IMAPProtocol protocol) throws ProtocolException {
+                final var lists = protocol.list("", "*");
+                if (lists == null) {
+                        return List.of();
                 }
 
-                final var holdsMessages = (folderType & Folder.HOLDS_MESSAGES) != 0;
-                final var holdsFolders = (folderType & Folder.HOLDS_FOLDERS) != 0;
-                final var messageCountDescription = holdsMessages
-                                ? resolveMessageCountDescription(folder, folderName)
-                                : "n/a";
+                final var statuses = new HashMap<String, Status>();
+                for (final var list : lists) {
+                        if (!list.canOpen) {
+                                continue;
+                        }
 
-                return new FolderDescriptor(folderName, depth, holdsMessages, holdsFolders, messageCountDescription);
+                        try {
+                                statuses.put(list.name, protocol.status(list.name, STATUS_ITEMS));
+                        } catch (ProtocolException exception) {
+                                log.warn("Failed to resolve STATUS for folder {}.", list.name, exception);
+                        }
+                }
+                return toEntries(List.of(lists), statuses);
         }
 
-        private String resolveMessageCountDescription(Folder folder, String folderName) {
-                try {
-                        return Integer.toString(folder.getMessageCount());
-                } catch (MessagingException exception) {
-                        log.warn("Failed to resolve message count for folder {}.", folderName, exception);
-                        return "error";
+        private static List<FolderEntry> toEntries(List<ListInfo> lists, Map<String, Status> statuses) {
+                return lists.stream()
+                                .sorted((left, right) -> left.name.compareTo(right.name))
+                                .map(list -> {
+                                        final var status = statuses.get(list.name);
+                                        return new FolderEntry(
+                                                        list.name,
+                                                        depthOf(list),
+                                                        list.canOpen,
+                                                        list.hasInferiors,
+                                                        list.attrs != null ? List.of(list.attrs) : List.of(),
+                                                        status != null && status.total >= 0 ? status.total : null,
+                                                        status != null && status.uidnext >= 0 ? status.uidnext : null,
+                                                        status != null && status.uidvalidity >= 0 ? status.uidvalidity : null);
+                                })
+                                .toList();
+        }
+
+        private static int depthOf(ListInfo list) {
+                if (list.separator == '\0') {
+                        return 1;
                 }
+                return list.name.split(Pattern.quote(String.valueOf(list.separator)), -1).length;
         }
 
         String resolveFolderDisplayName(Folder folder) {
@@ -120,12 +248,4 @@ public class GmailFolderExplorer {
 
                 return "(root)";
         }
-
-        private record FolderDescriptor(
-                String displayName,
-                int depth,
-                boolean holdsMessages,
-                boolean holdsFolders,
-                String messageCountDescription) {
-        }
 }
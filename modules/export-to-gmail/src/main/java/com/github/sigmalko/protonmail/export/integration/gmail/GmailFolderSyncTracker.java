@@ -0,0 +1,202 @@
+package com.github.sigmalko.protonmail.export.integration.gmail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.mail.FetchProfile;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.UIDFolder;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.springframework.stereotype.Component;
+
+import com.github.sigmalko.protonmail.export.domain.sync.FolderSyncStateService;
+import com.github.sigmalko.protonmail.export.domain.sync.FolderSyncStateService.PartitionCheckpoint;
+import com.github.sigmalko.protonmail.export.domain.sync.FolderSyncStateService.UidRange;
+
+/**
+ * Decides which part of a folder has to be fetched based on the persisted UIDVALIDITY and highest seen UID, and
+ * records the new high-water mark once a folder was fetched completely.
+ */
+@Slf4j(topic = "GMAIL")
+@Component
+@RequiredArgsConstructor
+public class GmailFolderSyncTracker {
+
+        private final GmailImapProperties properties;
+        private final FolderSyncStateService syncStateService;
+
+        public SyncPlan plan(Folder folder, String folderName) throws MessagingException {
+                final var messageCount = folder.getMessageCount();
+                if (!properties.incrementalSyncEnabled() || !(folder instanceof UIDFolder uidFolder)) {
+                        return SyncPlan.untracked(messageCount);
+                }
+
+                final var uidValidity = uidFolder.getUIDValidity();
+                final var lastUid = messageCount > 0 ? uidFolder.getUID(folder.getMessage(messageCount)) : 0L;
+                final var highestModSeq = resolveHighestModSeq(folder);
+                final var state = syncStateService.findByFolderName(folderName);
+
+                if (state.isEmpty()) {
+                        log.info("No sync state recorded for Gmail folder '{}'; running a full sync.", folderName);
+                        return new SyncPlan(uidValidity, 1, messageCount, lastUid, highestModSeq, false);
+                }
+
+                if (state.get().uidValidity() != uidValidity) {
+                        log.info(
+                                        "UIDVALIDITY of Gmail folder '{}' changed from {} to {}; running a full resync.",
+                                        folderName,
+                                        state.get().uidValidity(),
+                                        uidValidity);
+                        return new SyncPlan(uidValidity, 1, messageCount, lastUid, highestModSeq, false);
+                }
+
+                final var lastSeenUid = state.get().lastSeenUid();
+                if (lastUid <= lastSeenUid) {
+                        log.info("Gmail folder '{}' has no messages above UID {}.", folderName, lastSeenUid);
+                        return new SyncPlan(uidValidity, messageCount + 1, messageCount, lastSeenUid, highestModSeq, true);
+                }
+
+                // UID FETCH n:* always returns the last message, so UIDs have to be checked explicitly.
+                var firstSequence = messageCount + 1;
+                for (final var message : uidFolder.getMessagesByUID(lastSeenUid + 1, UIDFolder.MAXUID)) {
+                        if (message != null && uidFolder.getUID(message) > lastSeenUid) {
+                                firstSequence = Math.min(firstSequence, message.getMessageNumber());
+                        }
+                }
+
+                log.info(
+                                "Gmail folder '{}': fetching UIDs {}:{} (messages {}-{}).",
+                                folderName,
+                                lastSeenUid + 1,
+                                lastUid,
+                                firstSequence,
+                                messageCount);
+                return new SyncPlan(uidValidity, firstSequence, messageCount, lastUid, highestModSeq, true);
+        }
+
+        /**
+         * Records the synchronized range and drops the folder's partition checkpoints, which the completed run made
+         * obsolete whether or not it was partitioned; otherwise rows left behind while partitioning was switched off
+         * would be resumed with stale checkpoints once it is switched back on.
+         */
+        public void complete(String folderName, SyncPlan plan) {
+                if (plan.tracked()) {
+                        try {
+                                syncStateService.recordProgress(
+                                                folderName, plan.uidValidity(), plan.lastUid(), plan.highestModSeq());
+                        } catch (RuntimeException exception) {
+                                log.warn("Failed to record sync state for Gmail folder '{}'.", folderName, exception);
+                        }
+                }
+
+                try {
+                        syncStateService.clearPartitions(folderName);
+                } catch (RuntimeException exception) {
+                        log.warn("Failed to clear partition checkpoints of Gmail folder '{}'.", folderName, exception);
+                }
+        }
+
+        /**
+         * Splits the planned range into at most {@code maxPartitions} disjoint UID partitions when partitioned fetching
+         * is enabled and the range is large enough. Partitions left over from an interrupted run are resumed instead,
+         * whatever their number, with one extra partition for UIDs that arrived since. An empty list means the folder
+         * is fetched as a whole.
+         */
+        public List<PartitionCheckpoint> planPartitions(Folder folder, String folderName, SyncPlan plan, int maxPartitions)
+                        throws MessagingException {
+                if (!plan.tracked() || properties.folderPartitions() <= 1 || !(folder instanceof UIDFolder uidFolder)) {
+                        return List.of();
+                }
+
+                final var existing = syncStateService.findPartitions(folderName, plan.uidValidity());
+                if (!existing.isEmpty()) {
+                        final var partitions = new ArrayList<>(existing);
+                        final var coveredUpTo = existing.getLast().endUid();
+                        if (plan.lastUid() > coveredUpTo) {
+                                partitions.addAll(syncStateService.createPartitions(
+                                                folderName,
+                                                plan.uidValidity(),
+                                                List.of(new UidRange(coveredUpTo + 1, plan.lastUid()))));
+                        }
+                        log.info(
+                                        "Resuming partitioned fetch of Gmail folder '{}' ({} of {} partitions pending).",
+                                        folderName,
+                                        partitions.stream().filter(partition -> !partition.completed()).count(),
+                                        partitions.size());
+                        return List.copyOf(partitions);
+                }
+
+                final var partitionCount = Math.min(properties.folderPartitions(), maxPartitions);
+                final var messages = plan.lastSequence() - plan.firstSequence() + 1;
+                if (partitionCount <= 1 || messages < Math.max(partitionCount, properties.folderPartitionThreshold())) {
+                        return List.of();
+                }
+
+                // Sequence numbers split the range evenly; the UIDs at the boundaries make the partitions stable.
+                final var boundaries = new Message[partitionCount];
+                for (var index = 0; index < partitionCount; index++) {
+                        final var offset = (int) ((long) index * messages / partitionCount);
+                        boundaries[index] = folder.getMessage(plan.firstSequence() + offset);
+                }
+                final var uidProfile = new FetchProfile();
+                uidProfile.add(UIDFolder.FetchProfileItem.UID);
+                folder.fetch(boundaries, uidProfile);
+
+                final var ranges = new ArrayList<UidRange>(partitionCount);
+                for (var index = 0; index < partitionCount; index++) {
+                        final var startUid = uidFolder.getUID(boundaries[index]);
+                        final var endUid = index + 1 < partitionCount
+                                        ? uidFolder.getUID(boundaries[index + 1]) - 1
+                                        : plan.lastUid();
+                        ranges.add(new UidRange(startUid, endUid));
+                }
+
+                log.info("Fetching Gmail folder '{}' in {} UID partitions: {}.", folderName, partitionCount, ranges);
+                return syncStateService.createPartitions(folderName, plan.uidValidity(), ranges);
+        }
+
+        public void recordPartitionProgress(PartitionCheckpoint partition, long checkpointUid) {
+                syncStateService.recordPartitionProgress(partition.id(), checkpointUid);
+        }
+
+        private Long resolveHighestModSeq(Folder folder) {
+                if (!(folder instanceof IMAPFolder imapFolder)) {
+                        return null;
+                }
+
+                try {
+                        final var highestModSeq = imapFolder.getHighestModSeq();
+                        return highestModSeq > 0 ? highestModSeq : null;
+                } catch (MessagingException exception) {
+                        log.debug("HIGHESTMODSEQ is not available for folder {}.", folder.getFullName(), exception);
+                        return null;
+                }
+        }
+
+        /**
+         * Sequence range to fetch plus the state to persist once it was fetched; {@code uidValidity < 0} marks
+         * folders without UID support, which are always fetched in full and never recorded.
+         */
+        public record SyncPlan(
+                        long uidValidity,
+                        int firstSequence,
+                        int lastSequence,
+                        long lastUid,
+                        Long highestModSeq,
+                        boolean incremental) {
+
+                static SyncPlan untracked(int messageCount) {
+                        return new SyncPlan(-1, 1, messageCount, 0, null, false);
+                }
+
+                boolean tracked() {
+                        return uidValidity >= 0;
+                }
+        }
+}
@@ -0,0 +1,39 @@
+package com.github.sigmalko.protonmail.export.integration.gmail;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Immutable snapshot of the Gmail folder tree together with the per-folder STATUS values gathered while listing it.
+ * Counters are {@code null} when the server did not report them.
+ */
+public record GmailFolderTopology(List<FolderEntry> folders, Instant discoveredAt) {
+
+        public GmailFolderTopology {
+                folders = List.copyOf(folders);
+        }
+
+        public List<String> readableFolders() {
+                return folders.stream().filter(FolderEntry::holdsMessages).map(FolderEntry::fullName).toList();
+        }
+
+        public Optional<FolderEntry> findByAttribute(String attribute) {
+                return folders.stream().filter(folder -> folder.attributes().contains(attribute)).findFirst();
+        }
+
+        public record FolderEntry(
+                        String fullName,
+                        int depth,
+                        boolean holdsMessages,
+                        boolean holdsFolders,
+                        List<String> attributes,
+                        Integer messageCount,
+                        Long uidNext,
+                        Long uidValidity) {
+
+                public FolderEntry {
+                        attributes = List.copyOf(attributes);
+                }
+        }
+}
@@ -1,11 +1,14 @@
 package com.github.sigmalko.protonmail.export.integration.gmail;
 
-import com.github.sigmalko.protonmail.export.domain.migration.MigrationRepository.MigrationStatus;
+import com.github.sigmalko.protonmail.export.domain.migration.MigrationRepository.MigrationFlags;
 import com.github.sigmalko.protonmail.export.domain.migration.MigrationService;
+import com.github.sigmalko.protonmail.export.domain.migration.MigrationService.GmailAttributes;
 import com.github.sigmalko.protonmail.export.domain.migration.MigrationService.MigrationFlag;
 import com.github.sigmalko.protonmail.export.domain.problem.ProblemService;
+import com.github.sigmalko.protonmail.export.domain.problem.ProblemService.RemoteProblem;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -21,13 +24,83 @@ public class GmailHeaderSynchronizer {
         private final ProblemService problemService;
 
         public void synchronize(List<EmailHeader> headers) {
-                headers.forEach(this::synchronizeHeader);
+                final var problems = new ArrayList<RemoteProblem>();
+                final var messageIds = new ArrayList<String>(headers.size());
+                for (final var header : headers) {
+                        if (StringUtils.hasText(header.messageId())) {
+                                messageIds.add(header.messageId());
+                        } else {
+                                log.debug(
+                                                "Skipping Gmail message {} because it does not contain Message-ID header.",
+                                                header.messageNumber());
+                                problems.add(new RemoteProblem(
+                                                toMessageDate(header),
+                                                header.from(),
+                                                "Missing Message-ID header for Gmail message number "
+                                                                + header.messageNumber()));
+                        }
+                }
+
+                logProblems(problems);
+                if (messageIds.isEmpty()) {
+                        return;
+                }
+
+                try {
+                        final var result = migrationService.markMessagesInGmail(messageIds);
+                        log.debug(
+                                        "Reconciled Gmail window of {} messages (updated={}, unchanged={}, not in local files={}).",
+                                        messageIds.size(),
+                                        result.updated(),
+                                        result.unchanged(),
+                                        result.unknown());
+                } catch (Exception exception) {
+                        log.warn(
+                                        "Window-level reconciliation of {} Gmail messages failed. Falling back to per-message updates.",
+                                        messageIds.size(),
+                                        exception);
+                        headers.stream()
+                                        .filter(header -> StringUtils.hasText(header.messageId()))
+                                        .forEach(this::synchronizeHeader);
+                }
+
+                recordGmailAttributes(headers);
+        }
+
+        private void recordGmailAttributes(List<EmailHeader> headers) {
+                final var attributes = headers.stream()
+                                .filter(header -> StringUtils.hasText(header.messageId()) && header.gmailMessageId() != null)
+                                .map(header -> new GmailAttributes(header.messageId(), header.gmailMessageId(), header.labels()))
+                                .toList();
+                if (attributes.isEmpty()) {
+                        return;
+                }
+
+                try {
+                        migrationService.recordGmailAttributes(attributes);
+                } catch (Exception exception) {
+                        log.warn("Failed to store Gmail labels for {} messages.", attributes.size(), exception);
+                }
+        }
+
+        private void logProblems(List<RemoteProblem> problems) {
+                if (problems.isEmpty()) {
+                        return;
+                }
+
+                try {
+                        problemService.logRemoteProblems(problems);
+                } catch (Exception exception) {
+                        log.warn("Failed to log {} missing Message-ID problems for Gmail messages.", problems.size(), exception);
+                }
+        }
+
+        private OffsetDateTime toMessageDate(EmailHeader header) {
+                return header.sentAt() != null ? OffsetDateTime.ofInstant(header.sentAt(), ZoneOffset.UTC) : null;
         }
 
         private void synchronizeHeader(EmailHeader header) {
-                final var messageDate = header.sentAt() != null
-                                ? OffsetDateTime.ofInstant(header.sentAt(), ZoneOffset.UTC)
-                                : null;
+                final var messageDate = toMessageDate(header);
 
                 try {
                         if (!StringUtils.hasText(header.messageId())) {
@@ -42,11 +115,12 @@ public class GmailHeaderSynchronizer {
                                 return;
                         }
 
-                        final var existing = migrationService.findByMessageId(header.messageId());
+                        final var existing = migrationService.findFlagsByMessageId(header.messageId());
                         if (existing.isEmpty()) {
                                 log.debug(
-                                                "Skipping Gmail message {} because it was not discovered in local files.",
+                                                "Gmail message {} was not discovered in local files; storing it as present in Gmail only.",
                                                 header.messageId());
+                                migrationService.createGmailMigration(header.messageId(), messageDate);
                                 return;
                         }
 
@@ -68,7 +142,7 @@ public class GmailHeaderSynchronizer {
                 }
         }
 
-        private void markMessageAsExisting(MigrationStatus status) {
+        private void markMessageAsExisting(MigrationFlags status) {
                 if (status.messageInGmail()) {
                         return;
                 }
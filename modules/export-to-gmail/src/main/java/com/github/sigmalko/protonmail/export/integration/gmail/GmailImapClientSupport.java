@@ -1,5 +1,6 @@
 package com.github.sigmalko.protonmail.export.integration.gmail;
 
+import java.util.Optional;
 import java.util.Properties;
 
 import jakarta.mail.Folder;
@@ -7,18 +8,34 @@ import jakarta.mail.MessagingException;
 import jakarta.mail.Session;
 import jakarta.mail.Store;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 @Slf4j(topic = "GMAIL")
 @Component
-@RequiredArgsConstructor
 public class GmailImapClientSupport {
 
         private final GmailImapProperties properties;
+        private final GmailImapConnectionPool connectionPool;
+
+        public GmailImapClientSupport(
+                        GmailImapProperties properties, GmailThrottleGuard throttleGuard, MeterRegistry meterRegistry) {
+                this.properties = properties;
+                this.connectionPool = new GmailImapConnectionPool(
+                                () -> throttleGuard.call("IMAP login", this::connectStore),
+                                properties.poolMaxSize(),
+                                properties.poolIdleTimeout(),
+                                properties.poolKeepaliveInterval(),
+                                properties.poolBorrowTimeout(),
+                                meterRegistry);
+        }
 
         public boolean hasCredentials() {
                 return StringUtils.hasText(properties.username()) && StringUtils.hasText(properties.password());
@@ -38,11 +55,19 @@ public class GmailImapClientSupport {
                 props.put("mail.imaps.host", properties.host());
                 props.put("mail.imaps.port", Integer.toString(properties.port()));
                 props.put("mail.imaps.ssl.enable", Boolean.toString(properties.sslEnabled()));
+                props.put("mail.gimap.host", properties.host());
+                props.put("mail.gimap.port", Integer.toString(properties.port()));
+                props.put("mail.gimap.ssl.enable", Boolean.toString(properties.sslEnabled()));
+                props.put("mail.gimaps.host", properties.host());
+                props.put("mail.gimaps.port", Integer.toString(properties.port()));
+                props.put("mail.gimaps.ssl.enable", Boolean.toString(properties.sslEnabled()));
                 return props;
         }
 
         public String resolveProtocol() {
-                return properties.sslEnabled() ? "imaps" : "imap";
+                // The gimap provider adds the X-GM-MSGID and X-GM-LABELS fetch items used by the All Mail scan.
+                final var protocol = properties.sslEnabled() ? "imaps" : "imap";
+                return properties.allMailScanEnabled() ? "g" + protocol : protocol;
         }
 
         public FolderSession openReadOnlyFolder(String folder) throws MessagingException {
@@ -50,29 +75,55 @@ public class GmailImapClientSupport {
         }
 
         public StoreSession openStore() throws MessagingException {
-                final var store = connectStore();
-                return new StoreSession(store);
+                return new StoreSession(connectionPool.borrow());
+        }
+
+        /** Opens a pooled store only when a connection is free right now, for callers that must not wait. */
+        public Optional<StoreSession> tryOpenStore() throws MessagingException {
+                return connectionPool.tryBorrow().map(StoreSession::new);
         }
 
         public FolderSession openFolder(String folderName, int mode) throws MessagingException {
-                final var store = connectStore();
+                final var lease = connectionPool.borrow();
+                try {
+                        final var store = lease.store();
+                        final var targetFolder = store.getFolder(folderName);
+                        if (targetFolder == null) {
+                                throw new MessagingException("IMAP folder '%s' could not be resolved.".formatted(folderName));
+                        }
 
-                final var targetFolder = store.getFolder(folderName);
-                if (targetFolder == null) {
-                        throw new MessagingException("IMAP folder '%s' could not be resolved.".formatted(folderName));
-                }
+                        if (!targetFolder.exists() && mode != Folder.READ_ONLY) {
+                                log.info("IMAP folder '{}' does not exist. Creating it now...", folderName);
+                                targetFolder.create(Folder.HOLDS_MESSAGES);
+                        }
 
-                if (!targetFolder.exists() && mode != Folder.READ_ONLY) {
-                        log.info("IMAP folder '{}' does not exist. Creating it now...", folderName);
-                        targetFolder.create(Folder.HOLDS_MESSAGES);
-                }
+                        if (!targetFolder.exists()) {
+                                throw new MessagingException("IMAP folder '%s' does not exist.".formatted(folderName));
+                        }
 
-                if (!targetFolder.exists()) {
-                        throw new MessagingException("IMAP folder '%s' does not exist.".formatted(folderName));
+                        targetFolder.open(mode);
+                        return new FolderSession(lease, targetFolder);
+                } catch (MessagingException | RuntimeException exception) {
+                        lease.release();
+                        throw exception;
                 }
+        }
+
+        @Scheduled(
+                        initialDelayString = "${gmail.imap.pool-keepalive-interval:PT1M}",
+                        fixedDelayString = "${gmail.imap.pool-keepalive-interval:PT1M}")
+        public void maintainConnectionPool() {
+                connectionPool.maintain();
+        }
+
+        @PreDestroy
+        public void closeConnectionPool() {
+                connectionPool.close();
+        }
 
-                targetFolder.open(mode);
-                return new FolderSession(store, targetFolder);
+        /** Connects a store outside the pool for callers that hold the connection for the lifetime of the application. */
+        Store connectDedicatedStore() throws MessagingException {
+                return connectStore();
         }
 
         private Store connectStore() throws MessagingException {
@@ -89,38 +140,66 @@ public class GmailImapClientSupport {
                 return store;
         }
 
-        public record FolderSession(Store store, Folder folder) implements AutoCloseable {
+        public static final class FolderSession implements AutoCloseable {
+
+                private final GmailImapConnectionPool.Lease lease;
+                private final Folder folder;
+
+                private FolderSession(GmailImapConnectionPool.Lease lease, Folder folder) {
+                        this.lease = lease;
+                        this.folder = folder;
+                }
+
+                public Store store() {
+                        return lease.store();
+                }
+
+                public Folder folder() {
+                        return folder;
+                }
+
+                /** Discards the underlying connection instead of returning it to the pool. */
+                public void invalidate() {
+                        closeFolderQuietly(folder);
+                        lease.invalidate();
+                }
 
                 @Override
                 public void close() {
-                        if (folder != null && folder.isOpen()) {
-                                try {
-                                        folder.close(false);
-                                } catch (MessagingException exception) {
-                                        log.warn("Failed to close IMAP folder cleanly.", exception);
-                                }
-                        }
-
-                        if (store != null && store.isConnected()) {
-                                try {
-                                        store.close();
-                                } catch (MessagingException exception) {
-                                        log.warn("Failed to close IMAP store cleanly.", exception);
-                                }
-                        }
+                        closeFolderQuietly(folder);
+                        lease.release();
                 }
         }
 
-        public record StoreSession(Store store) implements AutoCloseable {
+        public static final class StoreSession implements AutoCloseable {
+
+                private final GmailImapConnectionPool.Lease lease;
+
+                private StoreSession(GmailImapConnectionPool.Lease lease) {
+                        this.lease = lease;
+                }
+
+                public Store store() {
+                        return lease.store();
+                }
+
+                /** Discards the underlying connection instead of returning it to the pool. */
+                public void invalidate() {
+                        lease.invalidate();
+                }
 
                 @Override
                 public void close() {
-                        if (store != null && store.isConnected()) {
-                                try {
-                                        store.close();
-                                } catch (MessagingException exception) {
-                                        log.warn("Failed to close IMAP store cleanly.", exception);
-                                }
+                        lease.release();
+                }
+        }
+
+        private static void closeFolderQuietly(Folder folder) {
+                if (folder != null && folder.isOpen()) {
+                        try {
+                                folder.close(false);
+                        } catch (MessagingException exception) {
+                                log.warn("Failed to close IMAP folder cleanly.", exception);
                         }
                 }
         }
@@ -0,0 +1,233 @@
+package com.github.sigmalko.protonmail.export.integration.gmail;
+
+import java.time.Duration;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Store;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded pool of authenticated IMAP stores. Idle stores are validated with NOOP before reuse when they have been
+ * idle for a while, kept alive by {@link #maintain()} and closed once they exceed the idle timeout.
+ */
+@Slf4j(topic = "GMAIL")
+final class GmailImapConnectionPool implements AutoCloseable {
+
+        private static final Duration VALIDATION_INTERVAL = Duration.ofSeconds(30);
+
+        private final StoreConnector connector;
+        private final int maxSize;
+        private final Duration idleTimeout;
+        private final Duration keepaliveInterval;
+        private final Duration borrowTimeout;
+        private final Semaphore permits;
+        private final Deque<IdleStore> idle = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger active = new AtomicInteger();
+        private final Timer waitTimer;
+        private final Counter createdCounter;
+        private final Counter evictedCounter;
+
+        GmailImapConnectionPool(
+                        StoreConnector connector,
+                        int maxSize,
+                        Duration idleTimeout,
+                        Duration keepaliveInterval,
+                        Duration borrowTimeout,
+                        MeterRegistry meterRegistry) {
+                this.connector = connector;
+                this.maxSize = Math.max(1, maxSize);
+                this.idleTimeout = idleTimeout;
+                this.keepaliveInterval = keepaliveInterval;
+                this.borrowTimeout = borrowTimeout;
+                this.permits = new Semaphore(this.maxSize, true);
+
+                Gauge.builder("gmail.imap.pool.active", active, AtomicInteger::get)
+                                .description("IMAP connections currently borrowed from the pool")
+                                .register(meterRegistry);
+                Gauge.builder("gmail.imap.pool.idle", idle, Deque::size)
+                                .description("Authenticated IMAP connections waiting in the pool")
+                                .register(meterRegistry);
+                Gauge.builder("gmail.imap.pool.max", () -> this.maxSize)
+                                .description("Maximum number of pooled IMAP connections")
+                                .register(meterRegistry);
+                Gauge.builder("gmail.imap.pool.utilisation", this, pool -> (double) pool.active.get() / pool.maxSize)
+                                .description("Share of the pool capacity that is currently borrowed")
+                                .register(meterRegistry);
+                waitTimer = Timer.builder("gmail.imap.pool.wait")
+                                .description("Time spent waiting for a pooled IMAP connection")
+                                .register(meterRegistry);
+                createdCounter = Counter.builder("gmail.imap.pool.connections.created")
+                                .description("IMAP connections opened by the pool")
+                                .register(meterRegistry);
+                evictedCounter = Counter.builder("gmail.imap.pool.connections.evicted")
+                                .description("IMAP connections closed because they were idle or unhealthy")
+                                .register(meterRegistry);
+        }
+
+        Lease borrow() throws MessagingException {
+                final var waitStartedAt = System.nanoTime();
+                final boolean acquired;
+                try {
+                        acquired = permits.tryAcquire(borrowTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                        throw new MessagingException("Interrupted while waiting for a pooled IMAP connection.", exception);
+                } finally {
+                        waitTimer.record(System.nanoTime() - waitStartedAt, TimeUnit.NANOSECONDS);
+                }
+
+                if (!acquired) {
+                        throw new MessagingException(
+                                        "Timed out after %s waiting for one of %d pooled IMAP connections."
+                                                        .formatted(borrowTimeout, maxSize));
+                }
+                return leaseAcquiredPermit();
+        }
+
+        /** Borrows a store only when a pooled connection is free right now. */
+        Optional<Lease> tryBorrow() throws MessagingException {
+                return permits.tryAcquire() ? Optional.of(leaseAcquiredPermit()) : Optional.empty();
+        }
+
+        private Lease leaseAcquiredPermit() throws MessagingException {
+                try {
+                        var store = takeHealthyIdleStore();
+                        if (store == null) {
+                                store = connector.connect();
+                                createdCounter.increment();
+                        }
+                        active.incrementAndGet();
+                        return new Lease(store);
+                } catch (MessagingException | RuntimeException exception) {
+                        permits.release();
+                        throw exception;
+                }
+        }
+
+        /**
+         * Closes stores idle for longer than the idle timeout and sends NOOP on the remaining idle stores once per
+         * keepalive interval so the server does not drop them.
+         */
+        void maintain() {
+                final var now = System.nanoTime();
+                for (final var candidate : idle) {
+                        final var idleFor = Duration.ofNanos(now - candidate.idleSince());
+                        final var uncheckedFor = Duration.ofNanos(now - candidate.checkedAt());
+                        final var due = uncheckedFor.compareTo(keepaliveInterval) >= 0 || idleFor.compareTo(idleTimeout) >= 0;
+                        if (!due || !idle.remove(candidate)) {
+                                continue;
+                        }
+
+                        if (idleFor.compareTo(idleTimeout) >= 0) {
+                                log.debug("Closing IMAP connection idle for {}.", idleFor);
+                                evict(candidate.store());
+                        } else if (candidate.store().isConnected()) {
+                                // Keep idleSince: only the keepalive time moves, so the idle timeout still expires.
+                                idle.offerLast(new IdleStore(candidate.store(), candidate.idleSince(), System.nanoTime()));
+                        } else {
+                                log.debug("Idle IMAP connection failed keepalive NOOP; discarding it.");
+                                evict(candidate.store());
+                        }
+                }
+        }
+
+        @Override
+        public void close() {
+                IdleStore candidate;
+                while ((candidate = idle.pollFirst()) != null) {
+                        closeQuietly(candidate.store());
+                }
+        }
+
+        private Store takeHealthyIdleStore() {
+                IdleStore candidate;
+                while ((candidate = idle.pollFirst()) != null) {
+                        final var uncheckedFor = Duration.ofNanos(System.nanoTime() - candidate.checkedAt());
+                        if (uncheckedFor.compareTo(VALIDATION_INTERVAL) < 0 || candidate.store().isConnected()) {
+                                return candidate.store();
+                        }
+
+                        log.info("Pooled IMAP connection is no longer usable; reconnecting.");
+                        evict(candidate.store());
+                }
+                return null;
+        }
+
+        private void release(Store store, boolean reusable) {
+                active.decrementAndGet();
+                try {
+                        if (reusable) {
+                                final var now = System.nanoTime();
+                                idle.offerFirst(new IdleStore(store, now, now));
+                        } else {
+                                evict(store);
+                        }
+                } finally {
+                        permits.release();
+                }
+        }
+
+        private void evict(Store store) {
+                evictedCounter.increment();
+                closeQuietly(store);
+        }
+
+        private static void closeQuietly(Store store) {
+                try {
+                        store.close();
+                } catch (MessagingException exception) {
+                        log.debug("Failed to close pooled IMAP store cleanly.", exception);
+                }
+        }
+
+        @FunctionalInterface
+        interface StoreConnector {
+
+                Store connect() throws MessagingException;
+        }
+
+        /** {@code idleSince} is when the store was returned, {@code checkedAt} when it last answered a keepalive. */
+        private record IdleStore(Store store, long idleSince, long checkedAt) {
+        }
+
+        final class Lease {
+
+                private final Store store;
+                private final AtomicBoolean released = new AtomicBoolean();
+
+                private Lease(Store store) {
+                        this.store = store;
+                }
+
+                Store store() {
+                        return store;
+                }
+
+                /** Returns the store to the pool. */
+                void release() {
+                        if (released.compareAndSet(false, true)) {
+                                GmailImapConnectionPool.this.release(store, true);
+                        }
+                }
+
+                /** Closes the store instead of returning it, e.g. after a connection-level failure. */
+                void invalidate() {
+                        if (released.compareAndSet(false, true)) {
+                                GmailImapConnectionPool.this.release(store, false);
+                        }
+                }
+        }
+}
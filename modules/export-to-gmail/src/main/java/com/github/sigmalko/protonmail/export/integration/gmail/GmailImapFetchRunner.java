@@ -3,6 +3,7 @@ package com.github.sigmalko.protonmail.export.integration.gmail;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
@@ -14,14 +15,33 @@ import org.springframework.stereotype.Component;
 public class GmailImapFetchRunner {
 
     private final GmailImapFetcher gmailImapFetcher;
+    private final GmailMissingMessageVerifier missingMessageVerifier;
+    private final GmailImapProperties properties;
+    private final ObjectProvider<GmailLiveChangeTracker> liveChangeTrackerProvider;
     private final ApplicationContext applicationContext;
 
     public void run() {
-        log.info("##################################################");
-        log.info("Fetching latest email headers from Gmail via IMAP...");
-        log.info("##################################################");
+        if (properties.verifyMissingEnabled()) {
+            log.info("##################################################");
+            log.info("Verifying messages missing in Gmail via X-GM-RAW...");
+            log.info("##################################################");
+
+            missingMessageVerifier.verifyMissingMessages();
+        } else {
+            log.info("##################################################");
+            log.info("Fetching latest email headers from Gmail via IMAP...");
+            log.info("##################################################");
+
+            gmailImapFetcher.fetchLatestHeaders();
+        }
+
+        final var liveChangeTracker = liveChangeTrackerProvider.getIfAvailable();
+        if (liveChangeTracker != null) {
+            log.info("IMAP header fetch complete. Following Gmail changes live.");
+            liveChangeTracker.start();
+            return;
+        }
 
-        gmailImapFetcher.fetchLatestHeaders();
         log.info("IMAP header fetch complete. Shutting down the application.");
         // final int exitCode = SpringApplication.exit(applicationContext, () -> 0);
         // System.exit(exitCode);
@@ -1,36 +1,54 @@
 package com.github.sigmalko.protonmail.export.integration.gmail;
 
+import java.time.Duration;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import jakarta.mail.FetchProfile;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import jakarta.mail.Folder;
 import jakarta.mail.Message;
 import jakarta.mail.MessagingException;
 import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
 
 import lombok.RequiredArgsConstructor;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import com.github.sigmalko.protonmail.export.domain.sync.FolderSyncStateService.PartitionCheckpoint;
+import com.github.sigmalko.protonmail.export.integration.gmail.GmailFolderSyncTracker.SyncPlan;
+
 @Slf4j(topic = "GMAIL")
 @Component
 @RequiredArgsConstructor
 public class GmailImapFetcher {
 
         private static final DateTimeFormatter HEADER_DATE_FORMATTER = DateTimeFormatter.RFC_1123_DATE_TIME;
+        private static final int GMAIL_MAX_SIMULTANEOUS_CONNECTIONS = 15;
+        /** Bytes per message of a header FETCH response besides Message-ID, From and labels. */
+        private static final int FETCH_RESPONSE_OVERHEAD = 160;
 
         private final GmailImapProperties properties;
         private final GmailImapClientSupport clientSupport;
         private final GmailEmailHeaderMapper mapper;
         private final GmailHeaderSynchronizer headerSynchronizer;
         private final GmailFolderExplorer folderExplorer;
+        private final GmailFolderSyncTracker syncTracker;
+        private final GmailWindowPipeline windowPipeline;
+        private final GmailWindowSizer windowSizer;
+        private final GmailThrottleGuard throttleGuard;
 
         public List<String> fetchReadableFolders() {
                 if (!clientSupport.hasCredentials()) {
@@ -51,26 +69,170 @@ public class GmailImapFetcher {
                 }
         }
 
+        /**
+         * Returns the cached folder topology, connecting to Gmail only when the cached snapshot expired. Never waits:
+         * returns nothing while every pooled connection is busy or another caller is discovering the topology.
+         */
+        public Optional<GmailFolderTopology> fetchFolderTopology() {
+                final var cached = folderExplorer.freshTopology();
+                if (cached.isPresent()) {
+                        return cached;
+                }
+
+                if (!clientSupport.hasCredentials()) {
+                        log.warn("Gmail IMAP credentials are not configured; skipping folder topology discovery.");
+                        return Optional.empty();
+                }
+
+                try {
+                        final var storeSession = clientSupport.tryOpenStore();
+                        if (storeSession.isEmpty()) {
+                                log.info("No pooled Gmail IMAP connection is free; not discovering the folder topology now.");
+                                return Optional.empty();
+                        }
+
+                        try (final var session = storeSession.get()) {
+                                final var topology = folderExplorer.tryTopology(session.store());
+                                if (topology.isEmpty()) {
+                                        log.info("Gmail folder topology is being discovered by another caller.");
+                                }
+                                return topology;
+                        }
+                } catch (MessagingException exception) {
+                        log.error("Failed to discover the Gmail folder topology.", exception);
+                        return Optional.empty();
+                }
+        }
+
         public void fetchLatestHeaders() {
                 if (!clientSupport.hasCredentials()) {
                         log.warn("Gmail IMAP credentials are not configured; skipping header fetch.");
                         return;
                 }
 
+                final var windowSize = properties.windowSize();
+                final var folderConcurrency = resolveFolderConcurrency();
+                final List<String> readableFolders;
                 try (final var storeSession = clientSupport.openStore()) {
                         final var store = storeSession.store();
-                        folderExplorer.logFolderTopology(store);
-
-                        final var readableFolders = folderExplorer.collectReadableFolders(store);
-                        logDiscoveredFolders(readableFolders);
+                        folderExplorer.logFolderTopology(folderExplorer.topology(store));
 
-                        final var windowSize = properties.windowSize();
+                        readableFolders = resolveFoldersToScan(store);
 
-                        for (final var folderName : readableFolders) {
-                                fetchHeadersFromFolder(store, folderName, windowSize);
+                        if (folderConcurrency <= 1) {
+                                final var results = new ArrayList<FolderFetchResult>();
+                                for (final var folderName : readableFolders) {
+                                        results.add(fetchHeadersFromFolder(store, folderName, windowSize));
+                                }
+                                logFolderResults(results);
+                                return;
                         }
                 } catch (MessagingException exception) {
                         log.error("Failed to fetch Gmail message headers.", exception);
+                        return;
+                }
+
+                logFolderResults(fetchFoldersConcurrently(readableFolders, windowSize, folderConcurrency));
+        }
+
+        /**
+         * Every Gmail label is exposed as a folder, so a message is listed once per label. In All Mail mode only the
+         * {@code \All} folder is scanned and labels are taken from {@code X-GM-LABELS} instead.
+         */
+        private List<String> resolveFoldersToScan(Store store) throws MessagingException {
+                if (properties.allMailScanEnabled()) {
+                        final var allMailFolder = StringUtils.hasText(properties.allMailFolder())
+                                        ? Optional.of(properties.allMailFolder())
+                                        : folderExplorer.findAllMailFolder(store);
+                        if (allMailFolder.isPresent()) {
+                                log.info("Scanning only Gmail folder '{}'; labels are read from X-GM-LABELS.", allMailFolder.get());
+                                return List.of(allMailFolder.get());
+                        }
+
+                        log.warn("Gmail All Mail folder could not be found; scanning every readable folder instead.");
+                }
+
+                final var readableFolders = folderExplorer.collectReadableFolders(store);
+                logDiscoveredFolders(readableFolders);
+                return readableFolders;
+        }
+
+        private int resolveFolderConcurrency() {
+                final var requested = Math.max(1, properties.folderConcurrency());
+                final var limit = folderConcurrencyLimit();
+                if (requested > limit) {
+                        log.warn(
+                                        "Requested folder concurrency {} exceeds the connection limit {}; using {}.",
+                                        requested,
+                                        limit,
+                                        limit);
+                        return limit;
+                }
+                return requested;
+        }
+
+        private int folderConcurrencyLimit() {
+                return Math.min(properties.poolMaxSize(), GMAIL_MAX_SIMULTANEOUS_CONNECTIONS);
+        }
+
+        /**
+         * Pooled connections a folder may use for partitions besides its own: every concurrently fetched folder already
+         * holds one, and the rest is shared evenly so that folders partitioned at the same time stay within the pool.
+         */
+        private int spareConnections() {
+                final var folderConcurrency = Math.min(Math.max(1, properties.folderConcurrency()), folderConcurrencyLimit());
+                return Math.max(0, properties.poolMaxSize() - folderConcurrency) / folderConcurrency;
+        }
+
+        private List<FolderFetchResult> fetchFoldersConcurrently(
+                        List<String> readableFolders, int windowSize, int folderConcurrency) {
+                log.info("Fetching {} Gmail folders with concurrency {}.", readableFolders.size(), folderConcurrency);
+
+                // Angus IMAP reads the socket inside synchronized blocks, which would pin virtual threads to carriers.
+                final var threadFactory = Thread.ofPlatform().name("gmail-folder-", 0).daemon().factory();
+                try (final var executor = Executors.newFixedThreadPool(folderConcurrency, threadFactory)) {
+                        final var futures = readableFolders.stream()
+                                        .map(folderName -> executor.submit(
+                                                        () -> fetchHeadersFromFolderOnOwnConnection(folderName, windowSize)))
+                                        .toList();
+
+                        final var results = new ArrayList<FolderFetchResult>(futures.size());
+                        for (var i = 0; i < futures.size(); i++) {
+                                try {
+                                        results.add(futures.get(i).get());
+                                } catch (ExecutionException exception) {
+                                        results.add(FolderFetchResult.failed(readableFolders.get(i), 0, exception.getCause()));
+                                } catch (InterruptedException exception) {
+                                        Thread.currentThread().interrupt();
+                                        log.warn("Interrupted while waiting for concurrent Gmail folder fetches.");
+                                        executor.shutdownNow();
+                                        break;
+                                }
+                        }
+                        return results;
+                }
+        }
+
+        private FolderFetchResult fetchHeadersFromFolderOnOwnConnection(String folderName, int windowSize) {
+                try (final var storeSession = clientSupport.openStore()) {
+                        return fetchHeadersFromFolder(storeSession.store(), folderName, windowSize);
+                } catch (MessagingException exception) {
+                        log.warn("Failed to obtain an IMAP connection for Gmail folder '{}'.", folderName, exception);
+                        return FolderFetchResult.failed(folderName, 0, exception);
+                }
+        }
+
+        private void logFolderResults(List<FolderFetchResult> results) {
+                for (final var result : results) {
+                        if (result.error() == null) {
+                                log.info("Gmail folder '{}': {} headers processed.", result.folderName(), result.headers());
+                        } else {
+                                log.warn(
+                                                "Gmail folder '{}': failed after {} headers ({}).",
+                                                result.folderName(),
+                                                result.headers(),
+                                                result.error().toString());
+                        }
                 }
         }
 
@@ -87,50 +249,250 @@ public class GmailImapFetcher {
                 log.info("folder.getNewMessageCount(): {}", folder.getNewMessageCount());
         }
 
-        private List<MessageWindow> determineWindows(Folder folder, int windowSize) throws MessagingException {
+        /**
+         * Walks the planned sequence range from the newest message down. Each window is sized when it is requested,
+         * so it already reflects the latency of the window fetched before it.
+         */
+        private Iterator<MessageWindow> determineWindows(Folder folder, String folderName, int windowSize, SyncPlan plan) {
                 if (windowSize <= 0) {
                         log.info("Configured window size is {}. Skipping header retrieval.", windowSize);
-                        return List.of();
+                        return Collections.emptyIterator();
                 }
 
-                final var messageCount = folder.getMessageCount();
-                if (messageCount == 0) {
+                if (plan.lastSequence() == 0) {
                         log.info("Folder {} is empty. Skipping header retrieval.", folder.getFullName());
-                        return List.of();
+                        return Collections.emptyIterator();
                 }
 
-                final var windows = new ArrayList<MessageWindow>();
-                for (var end = messageCount; end >= 1;) {
-                        final var start = Math.max(1, end - windowSize + 1);
-                        log.info("Getting messages {} - {}", start, end);
-                        windows.add(new MessageWindow(start, end));
-                        end = start - 1;
+                if (plan.firstSequence() > plan.lastSequence()) {
+                        log.info("Folder {} has no new messages. Skipping header retrieval.", folder.getFullName());
+                        return Collections.emptyIterator();
                 }
 
-                return List.copyOf(windows);
+                return new Iterator<>() {
+
+                        private int end = plan.lastSequence();
+
+                        @Override
+                        public boolean hasNext() {
+                                return end >= plan.firstSequence();
+                        }
+
+                        @Override
+                        public MessageWindow next() {
+                                if (!hasNext()) {
+                                        throw new NoSuchElementException();
+                                }
+
+                                final var start = Math.max(plan.firstSequence(), end - windowSizer.currentSize(folderName) + 1);
+                                log.info("Getting messages {} - {}", start, end);
+                                final var window = new MessageWindow(start, end);
+                                end = start - 1;
+                                return window;
+                        }
+                };
+        }
+
+        private List<EmailHeader> fetchHeaders(Folder folder, String folderName, MessageWindow window)
+                        throws MessagingException {
+                return fetchHeaders(folder, folderName, folder.getMessages(window.start(), window.end()), window.size());
+        }
+
+        private List<EmailHeader> fetchHeaders(Folder folder, String folderName, Message[] messages, int windowSize)
+                        throws MessagingException {
+                try {
+                        return throttleGuard.call("FETCH window of Gmail folder '%s'".formatted(folderName), () -> {
+                                final var startedAt = System.nanoTime();
+                                folder.fetch(messages, mapper.fetchProfile());
+
+                                final var headers = Arrays.stream(messages)
+                                                .<EmailHeader>mapMulti(mapper::map)
+                                                .sorted(Comparator.comparingInt(EmailHeader::messageNumber).reversed())
+                                                .toList();
+                                windowSizer.recordSuccess(
+                                                folderName,
+                                                windowSize,
+                                                messages.length,
+                                                responseBytes(headers),
+                                                Duration.ofNanos(System.nanoTime() - startedAt));
+                                return headers;
+                        });
+                } catch (MessagingException | RuntimeException exception) {
+                        windowSizer.recordFailure(folderName);
+                        throw exception;
+                }
         }
 
-        @SneakyThrows(MessagingException.class)
-        private List<EmailHeader> fetchHeaders(Folder folder, MessageWindow window) {
-                final var messages = folder.getMessages(window.start(), window.end());
-                fetchEnvelopeOnly(folder, messages);
+        /**
+         * Approximates the size of a FETCH response from the values it carried: the variable-length fields plus a fixed
+         * allowance per message for field names, dates, ids and framing.
+         */
+        private static long responseBytes(List<EmailHeader> headers) {
+                var bytes = 0L;
+                for (final var header : headers) {
+                        bytes += FETCH_RESPONSE_OVERHEAD;
+                        bytes += header.messageId() != null ? header.messageId().length() : 0;
+                        bytes += header.from() != null ? header.from().length() : 0;
+                        for (final var label : header.labels()) {
+                                bytes += label.length() + 3;
+                        }
+                }
+                return bytes;
+        }
 
-                final var headers = Arrays.stream(messages)
-                                .<EmailHeader>mapMulti(mapper::map)
-                                .sorted(Comparator.comparingInt(EmailHeader::messageNumber).reversed())
-                                .toList();
+        private void synchronizeHeaders(String folderName, int start, int end, List<EmailHeader> headers) {
                 headerSynchronizer.synchronize(headers);
                 headers.forEach(this::logHeader);
-                return headers;
+                log.info("Processed {} Gmail headers from folder '{}' window {}-{}.", headers.size(), folderName, start, end);
+        }
+
+        /**
+         * Fetches the pending partitions concurrently: the first one over the connection that already has the folder
+         * open, the others over at most {@link #spareConnections()} pooled connections, one partition after another
+         * when there are more partitions than connections (e.g. the extra partition of a resumed run). Without spare
+         * connections every partition is fetched over the folder's connection. Each partition checkpoints after every
+         * reconciled window; the folder only counts as synced once all partitions are complete.
+         */
+        private int fetchPartitions(Folder folder, String folderName, List<PartitionCheckpoint> partitions)
+                        throws MessagingException {
+                final var pending = partitions.stream().filter(partition -> !partition.completed()).toList();
+                if (pending.isEmpty()) {
+                        return 0;
+                }
+
+                final var connections = Math.min(spareConnections(), pending.size() - 1);
+                final var shared = connections > 0 ? pending.subList(0, 1) : pending;
+                final var threadFactory = Thread.ofPlatform().name("gmail-partition-", 0).daemon().factory();
+                try (final var executor = Executors.newFixedThreadPool(Math.max(1, connections), threadFactory)) {
+                        final var futures = pending.subList(shared.size(), pending.size()).stream()
+                                        .map(partition -> executor.submit(
+                                                        () -> fetchPartitionOnOwnConnection(folderName, partition)))
+                                        .toList();
+
+                        var processed = 0;
+                        Exception failure = null;
+                        try {
+                                for (final var partition : shared) {
+                                        processed += fetchPartition(folder, folderName, partition);
+                                }
+                        } catch (MessagingException | RuntimeException exception) {
+                                failure = exception;
+                        }
+
+                        for (final var future : futures) {
+                                try {
+                                        processed += future.get();
+                                } catch (ExecutionException exception) {
+                                        if (failure == null) {
+                                                failure = exception.getCause() instanceof Exception cause ? cause : exception;
+                                        }
+                                } catch (InterruptedException exception) {
+                                        Thread.currentThread().interrupt();
+                                        executor.shutdownNow();
+                                        throw new MessagingException(
+                                                        "Interrupted while fetching partitions of Gmail folder '%s'.".formatted(folderName),
+                                                        exception);
+                                }
+                        }
+
+                        if (failure != null) {
+                                throw new MessagingException(
+                                                "Partitioned fetch of Gmail folder '%s' stopped after %d headers; next run resumes from checkpoints."
+                                                                .formatted(folderName, processed),
+                                                failure);
+                        }
+                        return processed;
+                }
         }
 
-        private void fetchEnvelopeOnly(Folder folder, Message[] messages) throws MessagingException {
-                final var fetchProfile = new FetchProfile();
-                fetchProfile.add(FetchProfile.Item.ENVELOPE);
-                folder.fetch(messages, fetchProfile);
+        private int fetchPartitionOnOwnConnection(String folderName, PartitionCheckpoint partition)
+                        throws MessagingException {
+                try (final var folderSession = clientSupport.openReadOnlyFolder(folderName)) {
+                        return fetchPartition(folderSession.folder(), folderName, partition);
+                }
+        }
+
+        private int fetchPartition(Folder folder, String folderName, PartitionCheckpoint partition)
+                        throws MessagingException {
+                final var uidFolder = (UIDFolder) folder;
+                final var remaining = uidFolder.getMessagesByUID(partition.checkpointUid() + 1, partition.endUid());
+                final var messages = Arrays.stream(remaining)
+                                .filter(Objects::nonNull)
+                                .toArray(Message[]::new);
+                log.info(
+                                "Fetching partition UID {}:{} of Gmail folder '{}' ({} messages left).",
+                                partition.startUid(),
+                                partition.endUid(),
+                                folderName,
+                                messages.length);
+
+                final var processed = new AtomicInteger();
+                windowPipeline.run(
+                                partitionWindows(uidFolder, folderName, messages),
+                                window -> fetchHeaders(folder, folderName, window.messages(), window.requestedSize()),
+                                (window, headers) -> {
+                                        synchronizeHeaders(folderName, window.start(), window.end(), headers);
+                                        syncTracker.recordPartitionProgress(partition, window.lastUid());
+                                        processed.addAndGet(headers.size());
+                                });
+                syncTracker.recordPartitionProgress(partition, partition.endUid());
+                return processed.get();
+        }
+
+        // UIDs come from the UID FETCH above, so resolving them does not hit the server again.
+        private Iterator<PartitionWindow> partitionWindows(UIDFolder uidFolder, String folderName, Message[] messages) {
+                return new Iterator<>() {
+
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                                return next < messages.length;
+                        }
+
+                        @Override
+                        public PartitionWindow next() {
+                                if (!hasNext()) {
+                                        throw new NoSuchElementException();
+                                }
+
+                                final var requestedSize = windowSizer.currentSize(folderName);
+                                final var end = Math.min(messages.length, next + requestedSize);
+                                final var slice = Arrays.copyOfRange(messages, next, end);
+                                next += slice.length;
+                                try {
+                                        return new PartitionWindow(
+                                                        slice,
+                                                        requestedSize,
+                                                        slice[0].getMessageNumber(),
+                                                        slice[slice.length - 1].getMessageNumber(),
+                                                        uidFolder.getUID(slice[slice.length - 1]));
+                                } catch (MessagingException exception) {
+                                        throw new IllegalStateException("Failed to resolve UID of a fetched message.", exception);
+                                }
+                        }
+                };
+        }
+
+        private record PartitionWindow(Message[] messages, int requestedSize, int start, int end, long lastUid) {
         }
 
         private record MessageWindow(int start, int end) {
+
+                int size() {
+                        return end - start + 1;
+                }
+        }
+
+        private record FolderFetchResult(String folderName, int headers, Throwable error) {
+
+                static FolderFetchResult succeeded(String folderName, int headers) {
+                        return new FolderFetchResult(folderName, headers, null);
+                }
+
+                static FolderFetchResult failed(String folderName, int headers, Throwable error) {
+                        return new FolderFetchResult(folderName, headers, error);
+                }
         }
 
         private void logHeader(EmailHeader header) {
@@ -143,35 +505,47 @@ public class GmailImapFetcher {
                 log.info("{};;{};{};{}", header.messageNumber(), messageId, formattedDate, from);
         }
 
-        private void fetchHeadersFromFolder(Store store, String folderName, int windowSize) {
+        private FolderFetchResult fetchHeadersFromFolder(Store store, String folderName, int windowSize) {
                 Folder folder = null;
+                final var processed = new AtomicInteger();
                 try {
                         folder = store.getFolder(folderName);
                         if (folder == null) {
                                 log.warn("Gmail folder '{}' could not be resolved; skipping header retrieval.", folderName);
-                                return;
+                                return FolderFetchResult.succeeded(folderName, 0);
                         }
 
                         if (!folder.exists()) {
                                 log.warn("Gmail folder '{}' does not exist or is not accessible; skipping header retrieval.", folderName);
-                                return;
+                                return FolderFetchResult.succeeded(folderName, 0);
                         }
 
                         folder.open(Folder.READ_ONLY);
                         logFolderDetails(folder);
 
-                        final var windows = determineWindows(folder, windowSize);
-                        for (final var window : windows) {
-                                final var headers = fetchHeaders(folder, window);
-                                log.info(
-                                                "Processed {} Gmail headers from folder '{}' window {}-{}.",
-                                                headers.size(),
-                                                folder.getFullName(),
-                                                window.start(),
-                                                window.end());
+                        final var syncPlan = syncTracker.plan(folder, folderName);
+                        final var partitions =
+                                        syncTracker.planPartitions(folder, folderName, syncPlan, 1 + spareConnections());
+                        if (!partitions.isEmpty()) {
+                                processed.addAndGet(fetchPartitions(folder, folderName, partitions));
+                                syncTracker.complete(folderName, syncPlan);
+                                return FolderFetchResult.succeeded(folderName, processed.get());
                         }
-                } catch (MessagingException exception) {
+
+                        final var windows = determineWindows(folder, folderName, windowSize, syncPlan);
+                        final var openFolder = folder;
+                        windowPipeline.run(
+                                        windows,
+                                        window -> fetchHeaders(openFolder, folderName, window),
+                                        (window, headers) -> {
+                                                synchronizeHeaders(folderName, window.start(), window.end(), headers);
+                                                processed.addAndGet(headers.size());
+                                        });
+                        syncTracker.complete(folderName, syncPlan);
+                        return FolderFetchResult.succeeded(folderName, processed.get());
+                } catch (MessagingException | RuntimeException exception) {
                         log.warn("Failed to fetch Gmail message headers from folder '{}'.", folderName, exception);
+                        return FolderFetchResult.failed(folderName, processed.get(), exception);
                 } finally {
                         closeQuietly(folder);
                 }
@@ -1,5 +1,8 @@
 package com.github.sigmalko.protonmail.export.integration.gmail;
 
+import java.time.Duration;
+import java.util.List;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.bind.DefaultValue;
 
@@ -11,6 +14,35 @@ public record GmailImapProperties(
         @DefaultValue("true") boolean sslEnabled,
         String username,
         String password,
-        @DefaultValue("50") int windowSize
+        @DefaultValue("50") int windowSize,
+        @DefaultValue("true") boolean adaptiveWindowEnabled,
+        @DefaultValue("10") int windowSizeMin,
+        @DefaultValue("1000") int windowSizeMax,
+        @DefaultValue("PT2S") Duration windowLatencyTarget,
+        @DefaultValue("2") int windowPrefetchDepth,
+        @DefaultValue("1") int folderConcurrency,
+        @DefaultValue("1") int folderPartitions,
+        @DefaultValue("20000") int folderPartitionThreshold,
+        @DefaultValue("true") boolean incrementalSyncEnabled,
+        @DefaultValue("PT5M") Duration topologyTtl,
+        @DefaultValue("false") boolean allMailScanEnabled,
+        String allMailFolder,
+        @DefaultValue("false") boolean verifyMissingEnabled,
+        @DefaultValue("25") int verifyBatchSize,
+        @DefaultValue("false") boolean liveTrackingEnabled,
+        @DefaultValue("") List<String> liveFolders,
+        @DefaultValue("PT9M") Duration liveIdleRefresh,
+        @DefaultValue("PT1M") Duration livePollInterval,
+        @DefaultValue("4") int poolMaxSize,
+        @DefaultValue("PT5M") Duration poolIdleTimeout,
+        @DefaultValue("PT1M") Duration poolKeepaliveInterval,
+        @DefaultValue("PT2M") Duration poolBorrowTimeout,
+        @DefaultValue("1") int throttleConcurrencyMin,
+        @DefaultValue("15") int throttleConcurrencyMax,
+        @DefaultValue("5") int throttleRetryAttempts,
+        @DefaultValue("PT2S") Duration throttleRetryBase,
+        @DefaultValue("PT2M") Duration throttleRetryMax,
+        @DefaultValue("3") int throttleBreakerThreshold,
+        @DefaultValue("PT5M") Duration throttleBreakerPause
 ) {
 }
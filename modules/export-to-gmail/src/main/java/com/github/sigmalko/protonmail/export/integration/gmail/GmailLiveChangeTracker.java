@@ -0,0 +1,474 @@
+package com.github.sigmalko.protonmail.export.integration.gmail;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.event.MessageCountEvent;
+import jakarta.mail.event.MessageCountListener;
+import jakarta.mail.internet.InternetHeaders;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.eclipse.angus.mail.iap.Response;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.eclipse.angus.mail.imap.protocol.BODY;
+import org.eclipse.angus.mail.imap.protocol.FetchResponse;
+import org.eclipse.angus.mail.imap.protocol.UID;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.github.sigmalko.protonmail.export.domain.migration.MigrationService;
+
+/**
+ * Keeps {@code MIGRATIONS} in step with Gmail after the initial header fetch. Every tracked folder holds its own
+ * connection outside the pool: servers announcing IDLE push EXISTS and EXPUNGE responses, other servers are polled
+ * with NOOP every {@code gmail.imap.live-poll-interval}. New messages are reconciled like a fetch window; messages
+ * expunged from the All Mail folder are flagged as missing in Gmail again.
+ */
+@Slf4j(topic = "GMAIL")
+@Component
+@ConditionalOnProperty(prefix = "gmail.imap", name = "live-tracking-enabled", havingValue = "true")
+public class GmailLiveChangeTracker {
+
+        private static final String INBOX = "INBOX";
+        private static final int SEED_CHUNK_SIZE = 1000;
+        private static final Duration EXPUNGE_SETTLE_DELAY = Duration.ofSeconds(2);
+
+        private final GmailImapProperties properties;
+        private final GmailImapClientSupport clientSupport;
+        private final GmailFolderExplorer folderExplorer;
+        private final GmailEmailHeaderMapper headerMapper;
+        private final GmailHeaderSynchronizer headerSynchronizer;
+        private final MigrationService migrationService;
+        private final Counter addedCounter;
+        private final Counter removedCounter;
+        private final List<LiveFolder> liveFolders = new CopyOnWriteArrayList<>();
+        private ScheduledExecutorService scheduler;
+        private volatile boolean running;
+
+        public GmailLiveChangeTracker(
+                        GmailImapProperties properties,
+                        GmailImapClientSupport clientSupport,
+                        GmailFolderExplorer folderExplorer,
+                        GmailEmailHeaderMapper headerMapper,
+                        GmailHeaderSynchronizer headerSynchronizer,
+                        MigrationService migrationService,
+                        MeterRegistry meterRegistry) {
+                this.properties = properties;
+                this.clientSupport = clientSupport;
+                this.folderExplorer = folderExplorer;
+                this.headerMapper = headerMapper;
+                this.headerSynchronizer = headerSynchronizer;
+                this.migrationService = migrationService;
+                this.addedCounter = Counter.builder("gmail.live.messages")
+                                .tag("event", "added")
+                                .description("Messages reported as added by live Gmail tracking")
+                                .register(meterRegistry);
+                this.removedCounter = Counter.builder("gmail.live.messages")
+                                .tag("event", "removed")
+                                .description("Messages flagged as missing in Gmail by live Gmail tracking")
+                                .register(meterRegistry);
+        }
+
+        public synchronized void start() {
+                if (running) {
+                        return;
+                }
+
+                if (!clientSupport.hasCredentials()) {
+                        log.warn("Gmail IMAP credentials are not configured. Live tracking is disabled.");
+                        return;
+                }
+
+                final List<String> folderNames;
+                final Optional<String> allMailFolder;
+                try (var storeSession = clientSupport.openStore()) {
+                        allMailFolder = StringUtils.hasText(properties.allMailFolder())
+                                        ? Optional.of(properties.allMailFolder())
+                                        : folderExplorer.findAllMailFolder(storeSession.store());
+                        folderNames = resolveLiveFolders(allMailFolder);
+                } catch (MessagingException exception) {
+                        log.error("Failed to resolve Gmail folders for live tracking.", exception);
+                        return;
+                }
+
+                running = true;
+                scheduler = Executors.newSingleThreadScheduledExecutor(
+                                Thread.ofPlatform().name("gmail-live-scheduler").daemon().factory());
+                for (final var folderName : folderNames) {
+                        // Deletions only surface as expunges from All Mail; leaving any other label keeps the message.
+                        final var liveFolder = new LiveFolder(folderName, allMailFolder.filter(folderName::equals).isPresent());
+                        liveFolders.add(liveFolder);
+                        liveFolder.start();
+                }
+                scheduler.scheduleWithFixedDelay(
+                                this::refreshIdle,
+                                properties.liveIdleRefresh().toMillis(),
+                                properties.liveIdleRefresh().toMillis(),
+                                TimeUnit.MILLISECONDS);
+                log.info("Live Gmail tracking started for folders {}.", folderNames);
+        }
+
+        @PreDestroy
+        public synchronized void stop() {
+                if (!running) {
+                        return;
+                }
+
+                running = false;
+                scheduler.shutdownNow();
+                liveFolders.forEach(LiveFolder::stop);
+                liveFolders.clear();
+                log.info("Live Gmail tracking stopped.");
+        }
+
+        private List<String> resolveLiveFolders(Optional<String> allMailFolder) {
+                final var configured = properties.liveFolders().stream().filter(StringUtils::hasText).toList();
+                if (!configured.isEmpty()) {
+                        return configured;
+                }
+                return List.of(allMailFolder.orElse(INBOX));
+        }
+
+        /** Servers end IDLE after about 30 minutes; a NOOP in between restarts it before that happens. */
+        private void refreshIdle() {
+                liveFolders.forEach(LiveFolder::noop);
+        }
+
+        private final class LiveFolder implements MessageCountListener {
+
+                private final String folderName;
+                private final boolean trackExpunges;
+                private final Map<Long, String> messageIdsByUid = new ConcurrentHashMap<>();
+                private final AtomicLong highestSeededUid = new AtomicLong();
+                private final AtomicBoolean expungeReconciliationScheduled = new AtomicBoolean();
+                private final Thread thread;
+                private volatile Store store;
+                private volatile IMAPFolder folder;
+                private long seededUidValidity = -1;
+
+                private LiveFolder(String folderName, boolean trackExpunges) {
+                        this.folderName = folderName;
+                        this.trackExpunges = trackExpunges;
+                        // A platform thread: IDLE blocks inside synchronized IMAP code, which pins virtual threads.
+                        this.thread = Thread.ofPlatform().name("gmail-live-" + folderName).daemon().unstarted(this::run);
+                }
+
+                void start() {
+                        thread.start();
+                }
+
+                void stop() {
+                        thread.interrupt();
+                        closeQuietly();
+                        try {
+                                thread.join(Duration.ofSeconds(10));
+                        } catch (InterruptedException exception) {
+                                Thread.currentThread().interrupt();
+                        }
+                }
+
+                private void run() {
+                        while (running) {
+                                try {
+                                        track();
+                                } catch (MessagingException | RuntimeException exception) {
+                                        if (running) {
+                                                log.warn(
+                                                                "Live tracking of Gmail folder '{}' was interrupted; reconnecting in {}.",
+                                                                folderName,
+                                                                properties.livePollInterval(),
+                                                                exception);
+                                        }
+                                } finally {
+                                        closeQuietly();
+                                }
+
+                                if (running && !sleep(properties.livePollInterval())) {
+                                        return;
+                                }
+                        }
+                }
+
+                private void track() throws MessagingException {
+                        store = clientSupport.connectDedicatedStore();
+                        if (!(store.getFolder(folderName) instanceof IMAPFolder imapFolder)) {
+                                throw new MessagingException("Gmail folder '%s' is not an IMAP folder.".formatted(folderName));
+                        }
+
+                        imapFolder.open(Folder.READ_ONLY);
+                        imapFolder.addMessageCountListener(this);
+                        folder = imapFolder;
+                        if (trackExpunges) {
+                                seedMessageIds(imapFolder);
+                        }
+
+                        final var idle = store instanceof IMAPStore imapStore && imapStore.hasCapability("IDLE");
+                        log.info(
+                                        "Tracking Gmail folder '{}' ({} messages) using {}.",
+                                        folderName,
+                                        imapFolder.getMessageCount(),
+                                        idle ? "IDLE" : "NOOP polling");
+                        while (running && imapFolder.isOpen()) {
+                                if (idle) {
+                                        // Returns whenever another thread issues a command, so IDLE is simply re-entered.
+                                        imapFolder.idle();
+                                } else if (sleep(properties.livePollInterval())) {
+                                        noop();
+                                } else {
+                                        return;
+                                }
+                        }
+                }
+
+                /**
+                 * Expunge responses carry sequence numbers only, so the Message-ID of every UID is kept in memory: one
+                 * {@code UID FETCH (BODY.PEEK[HEADER.FIELDS (MESSAGE-ID)])} per chunk of {@value #SEED_CHUNK_SIZE} UIDs,
+                 * without materializing message objects. The map outlives reconnects while UIDVALIDITY is unchanged: a
+                 * reconnect only lists the UIDs, seeds the ones above the highest UID already known and reconciles the
+                 * messages added or removed while the connection was down.
+                 */
+                private void seedMessageIds(IMAPFolder imapFolder) throws MessagingException {
+                        final var uidValidity = imapFolder.getUIDValidity();
+                        final var resumed = uidValidity == seededUidValidity;
+                        if (!resumed) {
+                                messageIdsByUid.clear();
+                                highestSeededUid.set(0);
+                                seededUidValidity = uidValidity;
+                        }
+
+                        final var uids = (long[]) imapFolder.doCommand(protocol -> protocol.fetchSequenceNumbers(1, UIDFolder.MAXUID));
+                        final var known = highestSeededUid.get();
+                        var from = 0;
+                        while (from < uids.length && uids[from] <= known) {
+                                from++;
+                        }
+
+                        final var seededFrom = messageIdsByUid.size();
+                        final var added = new ArrayList<String>();
+                        for (; from < uids.length; from += SEED_CHUNK_SIZE) {
+                                final var first = uids[from];
+                                final var last = uids[Math.min(uids.length, from + SEED_CHUNK_SIZE) - 1];
+                                imapFolder.doCommand(protocol -> {
+                                        final var responses = protocol.command(
+                                                        "UID FETCH %d:%d (BODY.PEEK[HEADER.FIELDS (MESSAGE-ID)])".formatted(first, last),
+                                                        null);
+                                        protocol.notifyResponseHandlers(responses);
+                                        protocol.handleResult(responses[responses.length - 1]);
+                                        for (final Response response : responses) {
+                                                if (response instanceof FetchResponse fetchResponse) {
+                                                        rememberMessageId(fetchResponse).ifPresent(added::add);
+                                                }
+                                        }
+                                        return null;
+                                });
+                        }
+                        log.debug(
+                                        "Seeded {} Message-IDs of Gmail folder '{}' ({} in total).",
+                                        messageIdsByUid.size() - seededFrom,
+                                        folderName,
+                                        messageIdsByUid.size());
+
+                        if (resumed) {
+                                reconcileRemoved(uids);
+                                if (!added.isEmpty()) {
+                                        migrationService.markMessagesInGmail(added);
+                                        addedCounter.increment(added.size());
+                                        log.info(
+                                                        "Reconciled {} messages added to Gmail folder '{}' while it was not tracked.",
+                                                        added.size(),
+                                                        folderName);
+                                }
+                        }
+                }
+
+                private Optional<String> rememberMessageId(FetchResponse response) {
+                        final var uid = response.getItem(UID.class);
+                        final var body = response.getItem(BODY.class);
+                        if (uid == null || body == null || body.getByteArray() == null) {
+                                return Optional.empty();
+                        }
+
+                        highestSeededUid.accumulateAndGet(uid.uid, Math::max);
+                        try {
+                                final var messageId = new InternetHeaders(
+                                                new ByteArrayInputStream(body.getByteArray().getNewBytes()))
+                                                .getHeader("Message-ID", null);
+                                if (StringUtils.hasText(messageId)) {
+                                        messageIdsByUid.put(uid.uid, messageId.trim());
+                                        return Optional.of(messageId.trim());
+                                }
+                        } catch (MessagingException exception) {
+                                log.debug("Skipping unparsable Message-ID of UID {} in Gmail folder '{}'.", uid.uid, folderName, exception);
+                        }
+                        return Optional.empty();
+                }
+
+                @Override
+                public void messagesAdded(MessageCountEvent event) {
+                        final var messages = event.getMessages();
+                        try {
+                                final var fetchProfile = headerMapper.fetchProfile();
+                                fetchProfile.add(UIDFolder.FetchProfileItem.UID);
+                                folder.fetch(messages, fetchProfile);
+
+                                final var headers = new ArrayList<EmailHeader>(messages.length);
+                                for (final Message message : messages) {
+                                        headerMapper.map(message).ifPresent(header -> {
+                                                headers.add(header);
+                                                rememberAddedMessage(message, header);
+                                        });
+                                }
+                                headerSynchronizer.synchronize(headers);
+                                addedCounter.increment(headers.size());
+                                log.info("Reconciled {} new messages in Gmail folder '{}'.", headers.size(), folderName);
+                        } catch (MessagingException | RuntimeException exception) {
+                                log.warn("Failed to reconcile new messages in Gmail folder '{}'.", folderName, exception);
+                        }
+                }
+
+                private void rememberAddedMessage(Message message, EmailHeader header) {
+                        if (!trackExpunges || !StringUtils.hasText(header.messageId())) {
+                                return;
+                        }
+
+                        try {
+                                final var uid = folder.getUID(message);
+                                messageIdsByUid.put(uid, header.messageId());
+                                highestSeededUid.accumulateAndGet(uid, Math::max);
+                        } catch (MessagingException exception) {
+                                log.debug("Could not resolve the UID of new message {}.", message.getMessageNumber(), exception);
+                        }
+                }
+
+                @Override
+                public void messagesRemoved(MessageCountEvent event) {
+                        if (!trackExpunges) {
+                                log.debug(
+                                                "{} messages left Gmail folder '{}'; they remain in All Mail.",
+                                                event.getMessages().length,
+                                                folderName);
+                                return;
+                        }
+
+                        // A deletion of many messages arrives as one EXPUNGE each; reconcile once the burst settled.
+                        if (expungeReconciliationScheduled.compareAndSet(false, true)) {
+                                scheduler.schedule(
+                                                this::reconcileExpunges,
+                                                EXPUNGE_SETTLE_DELAY.toMillis(),
+                                                TimeUnit.MILLISECONDS);
+                        }
+                }
+
+                private void reconcileExpunges() {
+                        expungeReconciliationScheduled.set(false);
+                        final var currentFolder = folder;
+                        if (currentFolder == null) {
+                                return;
+                        }
+
+                        try {
+                                reconcileRemoved((long[]) currentFolder.doCommand(
+                                                protocol -> protocol.fetchSequenceNumbers(1, UIDFolder.MAXUID)));
+                        } catch (MessagingException | RuntimeException exception) {
+                                log.warn("Failed to reconcile removed messages in Gmail folder '{}'.", folderName, exception);
+                        }
+                }
+
+                /** Flags the Message-IDs of known UIDs missing from {@code uids} as missing in Gmail. */
+                private void reconcileRemoved(long[] uids) {
+                        final var present = new HashSet<Long>(uids.length * 2);
+                        for (final var uid : uids) {
+                                present.add(uid);
+                        }
+
+                        final var removed = new ArrayList<String>();
+                        messageIdsByUid.entrySet().removeIf(entry -> {
+                                if (present.contains(entry.getKey())) {
+                                        return false;
+                                }
+                                removed.add(entry.getValue());
+                                return true;
+                        });
+
+                        // Duplicates of a Message-ID under another UID keep the message in Gmail.
+                        removed.removeAll(new HashSet<>(messageIdsByUid.values()));
+                        if (removed.isEmpty()) {
+                                return;
+                        }
+
+                        final var updated = migrationService.markMessagesMissingInGmail(removed);
+                        removedCounter.increment(updated);
+                        log.info(
+                                        "{} messages were removed from Gmail folder '{}'; {} known messages flagged as missing in Gmail.",
+                                        removed.size(),
+                                        folderName,
+                                        updated);
+                }
+
+                void noop() {
+                        final var currentFolder = folder;
+                        if (currentFolder == null || !currentFolder.isOpen()) {
+                                return;
+                        }
+
+                        try {
+                                currentFolder.doCommand(protocol -> {
+                                        protocol.noop();
+                                        return null;
+                                });
+                        } catch (MessagingException | RuntimeException exception) {
+                                log.debug("NOOP on Gmail folder '{}' failed.", folderName, exception);
+                                closeQuietly();
+                        }
+                }
+
+                private void closeQuietly() {
+                        final var currentStore = store;
+                        folder = null;
+                        store = null;
+                        if (currentStore == null) {
+                                return;
+                        }
+
+                        try {
+                                currentStore.close();
+                        } catch (MessagingException exception) {
+                                log.debug("Failed to close live tracking connection for Gmail folder '{}'.", folderName, exception);
+                        }
+                }
+
+                private static boolean sleep(Duration duration) {
+                        try {
+                                Thread.sleep(duration);
+                                return true;
+                        } catch (InterruptedException exception) {
+                                Thread.currentThread().interrupt();
+                                return false;
+                        }
+                }
+        }
+}
@@ -0,0 +1,193 @@
+package com.github.sigmalko.protonmail.export.integration.gmail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.eclipse.angus.mail.iap.Argument;
+import org.eclipse.angus.mail.iap.Response;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.protocol.IMAPResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.github.sigmalko.protonmail.export.domain.migration.MigrationService;
+
+/**
+ * Checks only the messages still flagged as missing in Gmail instead of fetching every header again. Message-IDs are
+ * looked up in the All Mail folder with Gmail's {@code X-GM-RAW} search, {@code gmail.imap.verify-batch-size} IDs
+ * OR-ed into one SEARCH; only the headers of the hits are fetched and reconciled.
+ */
+@Slf4j(topic = "GMAIL")
+@Component
+@RequiredArgsConstructor
+public class GmailMissingMessageVerifier {
+
+        private final GmailImapProperties properties;
+        private final GmailImapClientSupport clientSupport;
+        private final GmailFolderExplorer folderExplorer;
+        private final GmailEmailHeaderMapper mapper;
+        private final GmailHeaderSynchronizer headerSynchronizer;
+        private final MigrationService migrationService;
+        private final GmailThrottleGuard throttleGuard;
+
+        public VerificationResult verifyMissingMessages() {
+                if (!clientSupport.hasCredentials()) {
+                        log.warn("Gmail IMAP credentials are not configured; skipping verification of missing messages.");
+                        return VerificationResult.EMPTY;
+                }
+
+                final var missing = migrationService.findMessageIdsMissingInGmailButInFiles();
+                if (missing.isEmpty()) {
+                        log.info("No messages are missing in Gmail; nothing to verify.");
+                        return VerificationResult.EMPTY;
+                }
+
+                final Optional<String> allMailFolder;
+                try (var storeSession = clientSupport.openStore()) {
+                        allMailFolder = StringUtils.hasText(properties.allMailFolder())
+                                        ? Optional.of(properties.allMailFolder())
+                                        : folderExplorer.findAllMailFolder(storeSession.store());
+                } catch (MessagingException exception) {
+                        log.error("Failed to resolve the Gmail All Mail folder.", exception);
+                        return VerificationResult.EMPTY;
+                }
+
+                if (allMailFolder.isEmpty()) {
+                        log.warn("Gmail All Mail folder could not be found; skipping verification of missing messages.");
+                        return VerificationResult.EMPTY;
+                }
+
+                log.info(
+                                "Verifying {} messages missing in Gmail with X-GM-RAW searches in folder '{}'.",
+                                missing.size(),
+                                allMailFolder.get());
+                try (var folderSession = clientSupport.openReadOnlyFolder(allMailFolder.get())) {
+                        return verify(folderSession.folder(), missing);
+                } catch (MessagingException exception) {
+                        log.error("Failed to verify messages missing in Gmail.", exception);
+                        return VerificationResult.EMPTY;
+                }
+        }
+
+        private VerificationResult verify(Folder folder, List<String> missing) throws MessagingException {
+                if (!(folder instanceof IMAPFolder imapFolder)) {
+                        throw new MessagingException("Gmail folder '%s' is not an IMAP folder.".formatted(folder.getFullName()));
+                }
+
+                final var batchSize = Math.max(1, properties.verifyBatchSize());
+                final var searchable = new ArrayList<String>(missing.size());
+                var skipped = 0;
+                for (final var messageId : missing) {
+                        if (isSearchable(messageId)) {
+                                searchable.add(messageId);
+                        } else {
+                                skipped++;
+                        }
+                }
+
+                var found = 0;
+                for (var from = 0; from < searchable.size(); from += batchSize) {
+                        final var batch = searchable.subList(from, Math.min(searchable.size(), from + batchSize));
+                        final var query = toRawQuery(batch);
+                        final var messages = throttleGuard.call("X-GM-RAW search and fetch", () -> searchAndFetch(imapFolder, query));
+                        if (messages.length == 0) {
+                                continue;
+                        }
+
+                        final var headers = new ArrayList<EmailHeader>(messages.length);
+                        for (final var message : messages) {
+                                mapper.map(message, headers::add);
+                        }
+
+                        headerSynchronizer.synchronize(headers);
+                        found += (int) headers.stream().map(EmailHeader::messageId).filter(batch::contains).distinct().count();
+                        log.debug(
+                                        "Verified {} of {} missing messages ({} found in Gmail so far).",
+                                        from + batch.size(),
+                                        searchable.size(),
+                                        found);
+                }
+
+                final var result = new VerificationResult(searchable.size(), found, skipped);
+                log.info(
+                                "Verified {} messages missing in Gmail: {} found, {} still missing, {} not searchable.",
+                                result.checked(),
+                                result.found(),
+                                result.checked() - result.found(),
+                                result.skipped());
+                return result;
+        }
+
+        /** Searches and fetches the headers of the hits together, so a throttled fetch retries under the guard too. */
+        private Message[] searchAndFetch(IMAPFolder folder, String query) throws MessagingException {
+                final var messageNumbers = search(folder, query);
+                if (messageNumbers.length == 0) {
+                        return new Message[0];
+                }
+
+                final var messages = folder.getMessages(messageNumbers);
+                folder.fetch(messages, mapper.fetchProfile());
+                return messages;
+        }
+
+        /** Sends {@code SEARCH X-GM-RAW "<query>"} and returns the matching message numbers in ascending order. */
+        private static int[] search(IMAPFolder folder, String query) throws MessagingException {
+                final var numbers = (TreeSet<?>) folder.doCommand(protocol -> {
+                        final var arguments = new Argument();
+                        arguments.writeAtom("X-GM-RAW");
+                        arguments.writeString(query);
+                        final var responses = protocol.command("SEARCH", arguments);
+                        final var response = responses[responses.length - 1];
+
+                        final var matches = new TreeSet<Integer>();
+                        if (response.isOK()) {
+                                for (final Response candidate : responses) {
+                                        if (candidate instanceof IMAPResponse imapResponse && imapResponse.keyEquals("SEARCH")) {
+                                                int number;
+                                                while ((number = imapResponse.readNumber()) != -1) {
+                                                        matches.add(number);
+                                                }
+                                        }
+                                }
+                        }
+                        protocol.notifyResponseHandlers(responses);
+                        protocol.handleResult(response);
+                        return matches;
+                });
+                return numbers.stream().mapToInt(Integer.class::cast).toArray();
+        }
+
+        private static String toRawQuery(List<String> messageIds) {
+                return String.join(" OR ", messageIds.stream()
+                                .map(messageId -> "rfc822msgid:" + stripAngleBrackets(messageId))
+                                .toList());
+        }
+
+        /** Gmail search has no escaping, so Message-IDs with whitespace, quotes or braces cannot be looked up. */
+        private static boolean isSearchable(String messageId) {
+                final var value = stripAngleBrackets(messageId);
+                return !value.isEmpty() && value.chars().noneMatch(ch -> Character.isWhitespace(ch) || "\"(){}".indexOf(ch) >= 0);
+        }
+
+        private static String stripAngleBrackets(String messageId) {
+                final var trimmed = messageId.trim();
+                if (trimmed.startsWith("<") && trimmed.endsWith(">")) {
+                        return trimmed.substring(1, trimmed.length() - 1);
+                }
+                return trimmed;
+        }
+
+        public record VerificationResult(int checked, int found, int skipped) {
+
+                static final VerificationResult EMPTY = new VerificationResult(0, 0, 0);
+        }
+}
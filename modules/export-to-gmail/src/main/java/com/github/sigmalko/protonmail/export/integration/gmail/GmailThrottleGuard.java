@@ -0,0 +1,252 @@
+package com.github.sigmalko.protonmail.export.integration.gmail;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jakarta.mail.MessagingException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Account-wide guard for IMAP operations against Gmail's throttling responses ({@code [THROTTLED]},
+ * {@code [OVERQUOTA]}, "Too many simultaneous connections"). Operations run under an AIMD limit on in-flight
+ * operations: every success raises the limit by about one per limit's worth of operations, a throttled response halves
+ * it once per congestion event. A throttled operation is retried after a jittered exponential backoff, and
+ * {@code gmail.imap.throttle-breaker-threshold} throttles in a row pause every operation for
+ * {@code gmail.imap.throttle-breaker-pause}.
+ */
+@Slf4j(topic = "GMAIL")
+@Component
+public class GmailThrottleGuard {
+
+        private static final List<String> THROTTLING_MARKERS =
+                        List.of("[THROTTLED]", "[OVERQUOTA]", "Too many simultaneous connections");
+
+        private final double minLimit;
+        private final double maxLimit;
+        private final int retryAttempts;
+        private final Duration retryBase;
+        private final Duration retryMax;
+        private final int breakerThreshold;
+        private final Duration breakerPause;
+        private final Counter throttledCounter;
+        private final Counter retriedCounter;
+        private final Counter breakerCounter;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+        private double limit;
+        private int inFlight;
+        private long lastDecreaseNanos = System.nanoTime();
+        private int consecutiveThrottles;
+        private long breakerOpenUntilNanos;
+        private boolean breakerOpen;
+
+        public GmailThrottleGuard(GmailImapProperties properties, MeterRegistry meterRegistry) {
+                this.minLimit = Math.max(1, properties.throttleConcurrencyMin());
+                this.maxLimit = Math.max(minLimit, properties.throttleConcurrencyMax());
+                this.retryAttempts = Math.max(1, properties.throttleRetryAttempts());
+                this.retryBase = properties.throttleRetryBase();
+                this.retryMax = properties.throttleRetryMax();
+                this.breakerThreshold = Math.max(1, properties.throttleBreakerThreshold());
+                this.breakerPause = properties.throttleBreakerPause();
+                this.limit = maxLimit;
+                this.throttledCounter = Counter.builder("gmail.imap.throttle.events")
+                                .tag("event", "throttled")
+                                .description("Gmail throttling responses and the reactions to them")
+                                .register(meterRegistry);
+                this.retriedCounter = Counter.builder("gmail.imap.throttle.events")
+                                .tag("event", "retried")
+                                .description("Gmail throttling responses and the reactions to them")
+                                .register(meterRegistry);
+                this.breakerCounter = Counter.builder("gmail.imap.throttle.events")
+                                .tag("event", "breaker-opened")
+                                .description("Gmail throttling responses and the reactions to them")
+                                .register(meterRegistry);
+                Gauge.builder("gmail.imap.throttle.limit", this, GmailThrottleGuard::currentLimit)
+                                .description("Current limit of concurrent IMAP operations against Gmail")
+                                .register(meterRegistry);
+        }
+
+        /**
+         * Runs the operation under the concurrency limit, retrying it while Gmail answers with a throttling response.
+         * Other failures are rethrown at once; the last throttling failure is rethrown once the attempts are used up.
+         */
+        public <T> T call(String operation, ImapCall<T> call) throws MessagingException {
+                for (var attempt = 1; ; attempt++) {
+                        final var startedAt = acquire(operation);
+                        var outcome = Outcome.FAILED;
+                        final Duration backoff;
+                        try {
+                                final var result = call.call();
+                                outcome = Outcome.SUCCEEDED;
+                                return result;
+                        } catch (MessagingException | RuntimeException exception) {
+                                final var marker = throttlingMarker(exception);
+                                if (marker.isEmpty()) {
+                                        throw exception;
+                                }
+
+                                outcome = Outcome.THROTTLED;
+                                throttledCounter.increment();
+                                if (attempt >= retryAttempts) {
+                                        log.warn(
+                                                        "{} was throttled by Gmail ({}); giving up after {} attempts.",
+                                                        operation,
+                                                        marker.get(),
+                                                        attempt);
+                                        throw exception;
+                                }
+
+                                backoff = backoff(attempt);
+                                log.info(
+                                                "{} was throttled by Gmail ({}); retrying in {} ms (attempt {} of {}).",
+                                                operation,
+                                                marker.get(),
+                                                backoff.toMillis(),
+                                                attempt + 1,
+                                                retryAttempts);
+                                retriedCounter.increment();
+                        } finally {
+                                release(startedAt, outcome);
+                        }
+                        sleep(operation, backoff);
+                }
+        }
+
+        /** Returns the throttling marker found in the exception or its causes. */
+        private static Optional<String> throttlingMarker(Throwable exception) {
+                for (var current = exception; current != null; current = current.getCause()) {
+                        final var message = current.getMessage();
+                        if (message == null) {
+                                continue;
+                        }
+
+                        for (final var marker : THROTTLING_MARKERS) {
+                                if (message.contains(marker)) {
+                                        return Optional.of(marker);
+                                }
+                        }
+                }
+                return Optional.empty();
+        }
+
+        private long acquire(String operation) throws MessagingException {
+                try {
+                        lock.lockInterruptibly();
+                } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                        throw new MessagingException("Interrupted before %s.".formatted(operation), exception);
+                }
+
+                try {
+                        while (true) {
+                                final var breakerRemaining = breakerOpenUntilNanos - System.nanoTime();
+                                if (breakerOpen && breakerRemaining > 0) {
+                                        available.awaitNanos(breakerRemaining);
+                                        continue;
+                                }
+
+                                if (breakerOpen) {
+                                        breakerOpen = false;
+                                        log.info("Resuming Gmail IMAP operations with a limit of {}.", (int) limit);
+                                }
+
+                                if (inFlight < (int) limit) {
+                                        inFlight++;
+                                        return System.nanoTime();
+                                }
+                                available.await();
+                        }
+                } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                        throw new MessagingException("Interrupted while waiting to run %s.".formatted(operation), exception);
+                } finally {
+                        lock.unlock();
+                }
+        }
+
+        private void release(long startedAt, Outcome outcome) {
+                lock.lock();
+                try {
+                        inFlight--;
+                        if (outcome == Outcome.SUCCEEDED) {
+                                consecutiveThrottles = 0;
+                                limit = Math.min(maxLimit, limit + 1 / limit);
+                        } else if (outcome == Outcome.THROTTLED) {
+                                // Operations already running when the limit dropped saw the same congestion event.
+                                if (startedAt - lastDecreaseNanos > 0) {
+                                        final var previous = limit;
+                                        limit = Math.max(minLimit, limit / 2);
+                                        lastDecreaseNanos = System.nanoTime();
+                                        log.info(
+                                                        "Gmail throttled an IMAP operation; lowering concurrency from {} to {}.",
+                                                        (int) previous,
+                                                        (int) limit);
+                                }
+
+                                if (++consecutiveThrottles >= breakerThreshold && !breakerOpen) {
+                                        breakerOpen = true;
+                                        breakerOpenUntilNanos = System.nanoTime() + breakerPause.toNanos();
+                                        consecutiveThrottles = 0;
+                                        breakerCounter.increment();
+                                        log.warn(
+                                                        "Gmail throttled {} IMAP operations in a row; pausing all operations for {}.",
+                                                        breakerThreshold,
+                                                        breakerPause);
+                                }
+                        }
+                        available.signalAll();
+                } finally {
+                        lock.unlock();
+                }
+        }
+
+        /** Exponential backoff capped at {@code gmail.imap.throttle-retry-max}, of which a random half is waited. */
+        private Duration backoff(int attempt) {
+                final var exponential = retryBase.toMillis() * (1L << Math.min(attempt - 1, 20));
+                final var capped = Math.max(1, Math.min(retryMax.toMillis(), exponential));
+                return Duration.ofMillis(capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1));
+        }
+
+        private static void sleep(String operation, Duration backoff) throws MessagingException {
+                try {
+                        TimeUnit.MILLISECONDS.sleep(backoff.toMillis());
+                } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                        throw new MessagingException("Interrupted while backing off %s.".formatted(operation), exception);
+                }
+        }
+
+        private double currentLimit() {
+                lock.lock();
+                try {
+                        return limit;
+                } finally {
+                        lock.unlock();
+                }
+        }
+
+        private enum Outcome {
+                SUCCEEDED,
+                FAILED,
+                THROTTLED
+        }
+
+        @FunctionalInterface
+        public interface ImapCall<T> {
+
+                T call() throws MessagingException;
+        }
+}
@@ -0,0 +1,213 @@
+package com.github.sigmalko.protonmail.export.integration.gmail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import jakarta.mail.MessagingException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Overlaps IMAP FETCH round-trips with database reconciliation. The calling thread keeps fetching windows from the
+ * open folder while a second thread synchronizes the already fetched ones; a bounded buffer of
+ * {@code gmail.imap.window-prefetch-depth} windows sits between both stages.
+ */
+@Slf4j(topic = "GMAIL")
+@Component
+class GmailWindowPipeline {
+
+        private static final Duration OFFER_TIMEOUT = Duration.ofMillis(200);
+
+        private final int prefetchDepth;
+        private final Timer fetchTimer;
+        private final Timer syncTimer;
+        private final Timer overlapTimer;
+        private final Timer fetchBlockedTimer;
+        private final Timer syncStarvedTimer;
+
+        GmailWindowPipeline(GmailImapProperties properties, MeterRegistry meterRegistry) {
+                this.prefetchDepth = Math.max(0, properties.windowPrefetchDepth());
+                this.fetchTimer = Timer.builder("gmail.imap.window.fetch")
+                                .description("Time spent fetching and mapping one window of Gmail headers")
+                                .register(meterRegistry);
+                this.syncTimer = Timer.builder("gmail.imap.window.sync")
+                                .description("Time spent reconciling one window of Gmail headers with the database")
+                                .register(meterRegistry);
+                this.overlapTimer = Timer.builder("gmail.imap.window.overlap")
+                                .description("Time per folder during which fetching and reconciliation ran concurrently")
+                                .register(meterRegistry);
+                this.fetchBlockedTimer = Timer.builder("gmail.imap.window.buffer.wait")
+                                .tag("stage", "fetch")
+                                .description("Time the fetch stage waited because the window buffer was full")
+                                .register(meterRegistry);
+                this.syncStarvedTimer = Timer.builder("gmail.imap.window.buffer.wait")
+                                .tag("stage", "sync")
+                                .description("Time the reconciliation stage waited for a fetched window")
+                                .register(meterRegistry);
+        }
+
+        <W> void run(Iterator<W> windows, WindowFetcher<W> fetcher, WindowSink<W> sink) throws MessagingException {
+                if (prefetchDepth == 0 || !windows.hasNext()) {
+                        while (windows.hasNext()) {
+                                final var window = windows.next();
+                                final var fetchStartedAt = System.nanoTime();
+                                final var headers = fetcher.fetch(window);
+                                fetchTimer.record(System.nanoTime() - fetchStartedAt, TimeUnit.NANOSECONDS);
+                                syncTimer.record(() -> sink.accept(window, headers));
+                        }
+                        return;
+                }
+
+                final BlockingQueue<Optional<FetchedWindow<W>>> buffer = new ArrayBlockingQueue<>(prefetchDepth);
+                final var failure = new AtomicReference<RuntimeException>();
+                final var fetchIntervals = new ArrayList<Interval>();
+                final var syncIntervals = new ArrayList<Interval>();
+
+                // A platform thread: the fetch stage blocks inside synchronized IMAP code, which pins virtual threads.
+                final var synchronizer = Thread.ofPlatform()
+                                .name("gmail-window-sync")
+                                .daemon()
+                                .start(() -> synchronizeUntilExhausted(buffer, sink, failure, syncIntervals));
+                try {
+                        while (windows.hasNext() && failure.get() == null) {
+                                final var window = windows.next();
+
+                                final var fetchStartedAt = System.nanoTime();
+                                final var headers = fetcher.fetch(window);
+                                final var fetched = new Interval(fetchStartedAt, System.nanoTime());
+                                fetchTimer.record(fetched.length(), TimeUnit.NANOSECONDS);
+                                fetchIntervals.add(fetched);
+
+                                final var offerStartedAt = System.nanoTime();
+                                final var queued = offer(buffer, Optional.of(new FetchedWindow<>(window, headers)), failure);
+                                fetchBlockedTimer.record(System.nanoTime() - offerStartedAt, TimeUnit.NANOSECONDS);
+                                if (!queued) {
+                                        break;
+                                }
+                        }
+                } finally {
+                        offer(buffer, Optional.empty(), failure);
+                        awaitTermination(synchronizer);
+                }
+
+                if (failure.get() != null) {
+                        throw failure.get();
+                }
+
+                // joining the synchronizer above makes its intervals visible to this thread
+                recordOverlap(fetchIntervals, syncIntervals);
+        }
+
+        private <W> void synchronizeUntilExhausted(
+                        BlockingQueue<Optional<FetchedWindow<W>>> buffer,
+                        WindowSink<W> sink,
+                        AtomicReference<RuntimeException> failure,
+                        List<Interval> syncIntervals) {
+                try {
+                        while (true) {
+                                final var waitStartedAt = System.nanoTime();
+                                final var next = buffer.take();
+                                syncStarvedTimer.record(System.nanoTime() - waitStartedAt, TimeUnit.NANOSECONDS);
+                                if (next.isEmpty()) {
+                                        return;
+                                }
+
+                                final var syncStartedAt = System.nanoTime();
+                                sink.accept(next.get().window(), next.get().headers());
+                                final var synced = new Interval(syncStartedAt, System.nanoTime());
+                                syncTimer.record(synced.length(), TimeUnit.NANOSECONDS);
+                                syncIntervals.add(synced);
+                        }
+                } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                        failure.compareAndSet(null, new IllegalStateException("Gmail window synchronization was interrupted."));
+                } catch (RuntimeException exception) {
+                        failure.compareAndSet(null, exception);
+                }
+        }
+
+        /** Records how long fetching and reconciliation were busy at the same time during one folder run. */
+        private void recordOverlap(List<Interval> fetchIntervals, List<Interval> syncIntervals) {
+                var overlap = 0L;
+                var fetchIndex = 0;
+                var syncIndex = 0;
+                while (fetchIndex < fetchIntervals.size() && syncIndex < syncIntervals.size()) {
+                        final var fetched = fetchIntervals.get(fetchIndex);
+                        final var synced = syncIntervals.get(syncIndex);
+                        overlap += Math.max(0, Math.min(fetched.end(), synced.end()) - Math.max(fetched.start(), synced.start()));
+                        if (fetched.end() < synced.end()) {
+                                fetchIndex++;
+                        } else {
+                                syncIndex++;
+                        }
+                }
+
+                overlapTimer.record(overlap, TimeUnit.NANOSECONDS);
+                log.debug(
+                                "Window pipeline: fetch {} ms, sync {} ms, overlap {} ms.",
+                                TimeUnit.NANOSECONDS.toMillis(totalLength(fetchIntervals)),
+                                TimeUnit.NANOSECONDS.toMillis(totalLength(syncIntervals)),
+                                TimeUnit.NANOSECONDS.toMillis(overlap));
+        }
+
+        private static long totalLength(List<Interval> intervals) {
+                return intervals.stream().mapToLong(Interval::length).sum();
+        }
+
+        private static void awaitTermination(Thread synchronizer) throws MessagingException {
+                try {
+                        synchronizer.join();
+                } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                        throw new MessagingException("Interrupted while waiting for Gmail window synchronization.", exception);
+                }
+        }
+
+        /** Blocks until the element is queued or the synchronizer failed, so a dead consumer cannot hang the fetch. */
+        private static <E> boolean offer(BlockingQueue<E> queue, E element, AtomicReference<RuntimeException> failure) {
+                try {
+                        while (failure.get() == null) {
+                                if (queue.offer(element, OFFER_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                                        return true;
+                                }
+                        }
+                } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                }
+                return false;
+        }
+
+        @FunctionalInterface
+        interface WindowFetcher<W> {
+
+                List<EmailHeader> fetch(W window) throws MessagingException;
+        }
+
+        @FunctionalInterface
+        interface WindowSink<W> {
+
+                void accept(W window, List<EmailHeader> headers);
+        }
+
+        private record FetchedWindow<W>(W window, List<EmailHeader> headers) {
+        }
+
+        private record Interval(long start, long end) {
+
+                long length() {
+                        return end - start;
+                }
+        }
+}
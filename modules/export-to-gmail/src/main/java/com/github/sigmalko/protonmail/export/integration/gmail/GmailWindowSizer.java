@@ -0,0 +1,107 @@
+package com.github.sigmalko.protonmail.export.integration.gmail;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-folder AIMD controller for the FETCH window size. A full window answered within the latency target grows the
+ * next one by the configured base window size as long as its throughput (response bytes per second) keeps up with the
+ * previous full window: once a larger window no longer moves more bytes per second, the link is saturated and the
+ * size is held. A slow or failed window halves it. Sizes stay within
+ * {@code gmail.imap.window-size-min}..{@code gmail.imap.window-size-max} and survive between fetch runs.
+ */
+@Slf4j(topic = "GMAIL")
+@Component
+class GmailWindowSizer {
+
+        /** Share of the previous throughput a window must reach to keep growing; absorbs measurement noise. */
+        private static final double THROUGHPUT_TOLERANCE = 0.9;
+
+        private final MeterRegistry meterRegistry;
+        private final boolean adaptive;
+        private final int initialSize;
+        private final int minSize;
+        private final int maxSize;
+        private final Duration latencyTarget;
+        private final Map<String, AtomicInteger> sizes = new ConcurrentHashMap<>();
+        private final Map<String, Double> throughputs = new ConcurrentHashMap<>();
+
+        GmailWindowSizer(GmailImapProperties properties, MeterRegistry meterRegistry) {
+                this.meterRegistry = meterRegistry;
+                this.adaptive = properties.adaptiveWindowEnabled();
+                this.minSize = Math.max(1, properties.windowSizeMin());
+                this.maxSize = Math.max(minSize, properties.windowSizeMax());
+                this.initialSize = Math.clamp(properties.windowSize(), minSize, maxSize);
+                this.latencyTarget = properties.windowLatencyTarget();
+        }
+
+        int currentSize(String folderName) {
+                return adaptive ? sizeOf(folderName).get() : initialSize;
+        }
+
+        void recordSuccess(String folderName, int windowSize, int messages, long bytes, Duration latency) {
+                if (!adaptive) {
+                        return;
+                }
+
+                if (latency.compareTo(latencyTarget) > 0) {
+                        decrease(folderName, "took %d ms".formatted(latency.toMillis()));
+                        return;
+                }
+
+                // Only full windows say something about the capacity of the link.
+                if (messages < windowSize) {
+                        return;
+                }
+
+                final var throughput = bytes * 1e9 / Math.max(1, latency.toNanos());
+                final var previous = throughputs.put(folderName, throughput);
+                if (previous == null || throughput >= previous * THROUGHPUT_TOLERANCE) {
+                        sizeOf(folderName).updateAndGet(size -> Math.min(maxSize, size + initialSize));
+                } else {
+                        log.debug(
+                                        "FETCH window of Gmail folder '{}' moved {} B/s after {} B/s; holding window at {}.",
+                                        folderName,
+                                        (long) throughput,
+                                        previous.longValue(),
+                                        windowSize);
+                }
+        }
+
+        void recordFailure(String folderName) {
+                if (adaptive) {
+                        decrease(folderName, "failed");
+                }
+        }
+
+        private void decrease(String folderName, String reason) {
+                final var size = sizeOf(folderName);
+                final var previous = size.getAndUpdate(current -> Math.max(minSize, current / 2));
+                log.info(
+                                "FETCH window of Gmail folder '{}' {}; shrinking window from {} to {}.",
+                                folderName,
+                                reason,
+                                previous,
+                                size.get());
+        }
+
+        private AtomicInteger sizeOf(String folderName) {
+                return sizes.computeIfAbsent(folderName, name -> {
+                        final var size = new AtomicInteger(initialSize);
+                        Gauge.builder("gmail.imap.window.size", size, AtomicInteger::get)
+                                        .tag("folder", name)
+                                        .description("Current FETCH window size of a Gmail folder")
+                                        .register(meterRegistry);
+                        return size;
+                });
+        }
+}
@@ -0,0 +1,149 @@
+package com.github.sigmalko.protonmail.export.integration.gmail.seed;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+
+import org.eclipse.angus.mail.iap.Literal;
+import org.eclipse.angus.mail.util.CRLFOutputStream;
+
+/**
+ * An APPEND literal that streams an EML file as stored on disk instead of a re-serialized {@code MimeMessage}, so
+ * memory per upload does not depend on the message size. Files with CRLF line endings are copied through a
+ * {@link FileChannel} unchanged; files with bare CR or LF line endings, which IMAP does not allow, are converted while
+ * streaming and their converted size is counted up front.
+ */
+public final class EmlFileLiteral implements Literal {
+
+        private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+        private final Path path;
+        private final long size;
+        private final boolean crlf;
+        private final Date internalDate;
+
+        private EmlFileLiteral(Path path, long size, boolean crlf, Date internalDate) {
+                this.path = path;
+                this.size = size;
+                this.crlf = crlf;
+                this.internalDate = internalDate;
+        }
+
+        /** Opens the file for APPEND; {@code internalDate} may be {@code null} to let the server use its own time. */
+        public static EmlFileLiteral open(Path path, Date internalDate) throws IOException {
+                final var fileSize = Files.size(path);
+                final var missingCarriageReturns = countMissingCarriageReturns(path);
+                final var size = fileSize + missingCarriageReturns;
+                if (size > Integer.MAX_VALUE) {
+                        throw new IOException("EML file %s is too large for an IMAP literal.".formatted(path));
+                }
+                return new EmlFileLiteral(path, size, missingCarriageReturns == 0, internalDate);
+        }
+
+        /** Counts the bytes {@link CRLFOutputStream} adds: one per bare LF and one per CR not followed by LF. */
+        private static long countMissingCarriageReturns(Path path) throws IOException {
+                final var buffer = new byte[SCAN_BUFFER_SIZE];
+                var count = 0L;
+                var previous = -1;
+                try (var input = Files.newInputStream(path)) {
+                        int read;
+                        while ((read = input.read(buffer)) != -1) {
+                                for (var index = 0; index < read; index++) {
+                                        final var current = buffer[index];
+                                        if (current == '\n' && previous != '\r' || current != '\n' && previous == '\r') {
+                                                count++;
+                                        }
+                                        previous = current;
+                                }
+                        }
+                }
+                return previous == '\r' ? count + 1 : count;
+        }
+
+        public Path path() {
+                return path;
+        }
+
+        public Date internalDate() {
+                return internalDate;
+        }
+
+        @Override
+        public int size() {
+                return (int) size;
+        }
+
+        /**
+         * Writes exactly {@link #size()} bytes or fails: a file that changed since it was opened would otherwise send a
+         * literal of the wrong length and desynchronise the IMAP connection.
+         */
+        @Override
+        public void writeTo(OutputStream output) throws IOException {
+                if (!crlf) {
+                        final var bounded = new BoundedOutputStream(output, size, path);
+                        final var converted = new CRLFOutputStream(bounded);
+                        Files.copy(path, converted);
+                        converted.flush();
+                        if (bounded.count != size) {
+                                throw new IOException("EML file %s shrank while it was appended (%d of %d bytes)."
+                                                .formatted(path, bounded.count, size));
+                        }
+                        return;
+                }
+
+                try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                        final var target = Channels.newChannel(output);
+                        var position = 0L;
+                        while (position < size) {
+                                final var transferred = channel.transferTo(position, size - position, target);
+                                // The target blocks, so nothing transferred means the file ended early.
+                                if (transferred <= 0) {
+                                        throw new IOException("EML file %s shrank while it was appended (%d of %d bytes)."
+                                                        .formatted(path, position, size));
+                                }
+                                position += transferred;
+                        }
+                }
+        }
+
+        /** Passes at most {@code limit} bytes through and fails before a write would exceed them. */
+        private static final class BoundedOutputStream extends FilterOutputStream {
+
+                private final long limit;
+                private final Path path;
+                private long count;
+
+                private BoundedOutputStream(OutputStream output, long limit, Path path) {
+                        super(output);
+                        this.limit = limit;
+                        this.path = path;
+                }
+
+                @Override
+                public void write(int value) throws IOException {
+                        ensureRoom(1);
+                        out.write(value);
+                        count++;
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                        ensureRoom(length);
+                        out.write(bytes, offset, length);
+                        count += length;
+                }
+
+                private void ensureRoom(int length) throws IOException {
+                        if (count + length > limit) {
+                                throw new IOException("EML file %s grew while it was appended (more than %d bytes)."
+                                                .formatted(path, limit));
+                        }
+                }
+        }
+}
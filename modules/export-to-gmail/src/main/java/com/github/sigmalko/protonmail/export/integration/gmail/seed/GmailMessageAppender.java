@@ -1,17 +1,39 @@
 package com.github.sigmalko.protonmail.export.integration.gmail.seed;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Properties;
 
 import jakarta.mail.Flags;
 import jakarta.mail.Folder;
 import jakarta.mail.Message;
 import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
 import jakarta.mail.internet.MimeMessage;
 
 import lombok.extern.slf4j.Slf4j;
 
+import org.eclipse.angus.mail.iap.Argument;
+import org.eclipse.angus.mail.iap.Literal;
+import org.eclipse.angus.mail.iap.Response;
+import org.eclipse.angus.mail.imap.AppendUID;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.eclipse.angus.mail.imap.protocol.BASE64MailboxEncoder;
+import org.eclipse.angus.mail.imap.protocol.INTERNALDATE;
+import org.eclipse.angus.mail.imap.protocol.UIDSet;
+import org.eclipse.angus.mail.util.CRLFOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.github.sigmalko.protonmail.export.integration.gmail.GmailThrottleGuard;
+
 @Slf4j(topic = "GMAIL")
 @Component
 public class GmailMessageAppender {
@@ -19,13 +41,16 @@ public class GmailMessageAppender {
         private static final String DEFAULT_IMAP_FOLDER_CLASS_NAME = "com.sun.mail.imap.IMAPFolder";
 
         private final String imapFolderClassName;
+        private final GmailThrottleGuard throttleGuard;
 
-        public GmailMessageAppender() {
-                this(DEFAULT_IMAP_FOLDER_CLASS_NAME);
+        @Autowired
+        public GmailMessageAppender(GmailThrottleGuard throttleGuard) {
+                this(DEFAULT_IMAP_FOLDER_CLASS_NAME, throttleGuard);
         }
 
-        GmailMessageAppender(String imapFolderClassName) {
+        GmailMessageAppender(String imapFolderClassName, GmailThrottleGuard throttleGuard) {
                 this.imapFolderClassName = imapFolderClassName;
+                this.throttleGuard = throttleGuard;
         }
 
         public void appendToFolder(Folder folder, MimeMessage message) throws MessagingException {
@@ -36,6 +61,162 @@ public class GmailMessageAppender {
                 folder.appendMessages(new Message[] { message });
         }
 
+        /**
+         * Appends the messages as seen, with their sent date as INTERNALDATE. Servers announcing MULTIAPPEND
+         * (RFC 3502) receive all messages in one atomic APPEND command; other servers get one APPEND per message.
+         */
+        public void appendMessages(Folder folder, List<MimeMessage> messages) throws MessagingException {
+                if (messages.isEmpty()) {
+                        return;
+                }
+
+                if (!(folder instanceof IMAPFolder imapFolder)) {
+                        folder.appendMessages(messages.toArray(Message[]::new));
+                        return;
+                }
+
+                final var entries = new ArrayList<AppendEntry>(messages.size());
+                for (final var message : messages) {
+                        entries.add(new AppendEntry(toLiteral(message), resolveInternalDate(message)));
+                }
+                append(imapFolder, entries);
+        }
+
+        /**
+         * Appends EML files byte for byte as seen messages, streaming each file as the APPEND literal; see
+         * {@link #appendMessages(Folder, List)} for the use of MULTIAPPEND. Returns the APPENDUID (RFC 4315) of each
+         * file in order; entries are {@code null} when the server did not report one.
+         */
+        public List<AppendUID> appendFiles(Folder folder, List<EmlFileLiteral> files) throws MessagingException {
+                if (files.isEmpty()) {
+                        return List.of();
+                }
+
+                if (!(folder instanceof IMAPFolder imapFolder)) {
+                        final var session = Session.getInstance(new Properties());
+                        final var messages = new ArrayList<MimeMessage>(files.size());
+                        for (final var file : files) {
+                                try (var input = Files.newInputStream(file.path())) {
+                                        messages.add(new MimeMessage(session, input));
+                                } catch (IOException exception) {
+                                        throw new MessagingException("Failed to read EML file " + file.path(), exception);
+                                }
+                        }
+                        folder.appendMessages(messages.toArray(Message[]::new));
+                        return Arrays.asList(new AppendUID[files.size()]);
+                }
+
+                return append(imapFolder, files.stream().map(file -> new AppendEntry(file, file.internalDate())).toList());
+        }
+
+        /**
+         * Every APPEND command runs under the throttle guard and is retried on its own when Gmail throttles it, so a
+         * throttled message never resends the ones already appended.
+         */
+        private List<AppendUID> append(IMAPFolder imapFolder, List<AppendEntry> entries) throws MessagingException {
+                final var mailbox = imapFolder.getFullName();
+                final var flags = new Flags(Flags.Flag.SEEN);
+                if (entries.size() > 1 && supportsMultiAppend(imapFolder)) {
+                        return throttleGuard.call(
+                                        "MULTIAPPEND of %d messages".formatted(entries.size()),
+                                        () -> multiAppend(imapFolder, mailbox, entries));
+                }
+
+                final var appendUids = new ArrayList<AppendUID>(entries.size());
+                for (final var entry : entries) {
+                        appendUids.add(throttleGuard.call("APPEND", () -> (AppendUID) imapFolder.doCommand(
+                                        protocol -> protocol.appenduid(mailbox, flags, entry.internalDate(), entry.literal()))));
+                }
+                return appendUids;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<AppendUID> multiAppend(IMAPFolder imapFolder, String mailbox, List<AppendEntry> entries)
+                        throws MessagingException {
+                return (List<AppendUID>) imapFolder.doCommand(protocol -> {
+                        final var arguments = new Argument();
+                        arguments.writeString(BASE64MailboxEncoder.encode(mailbox));
+                        for (final var entry : entries) {
+                                arguments.writeAtom("(\\Seen)");
+                                if (entry.internalDate() != null) {
+                                        arguments.writeString(INTERNALDATE.format(entry.internalDate()));
+                                }
+                                arguments.writeBytes(entry.literal());
+                        }
+
+                        final var responses = protocol.command("APPEND", arguments);
+                        protocol.notifyResponseHandlers(responses);
+                        protocol.handleResult(responses[responses.length - 1]);
+                        return parseAppendUids(responses[responses.length - 1], entries.size());
+                });
+        }
+
+        /**
+         * Reads {@code [APPENDUID <uidvalidity> <uid-set>]} from the tagged OK of a MULTIAPPEND. The UID set lists one
+         * UID per appended message in order; a missing or malformed code yields {@code null} entries.
+         */
+        private static List<AppendUID> parseAppendUids(Response response, int count) {
+                final var unknown = Arrays.asList(new AppendUID[count]);
+                byte next;
+                do {
+                        next = response.readByte();
+                } while (next > 0 && next != '[');
+                if (next != '[' || !"APPENDUID".equalsIgnoreCase(response.readAtom())) {
+                        return unknown;
+                }
+
+                final var uidValidity = response.readLong();
+                final var uids = UIDSet.toArray(UIDSet.parseUIDSets(response.readAtom()));
+                if (uidValidity < 0 || uids == null || uids.length != count) {
+                        log.debug("Ignoring APPENDUID response that does not match {} appended messages.", count);
+                        return unknown;
+                }
+
+                final var appendUids = new ArrayList<AppendUID>(count);
+                for (final var uid : uids) {
+                        appendUids.add(new AppendUID(uidValidity, uid));
+                }
+                return appendUids;
+        }
+
+        private static boolean supportsMultiAppend(IMAPFolder folder) throws MessagingException {
+                return folder.getStore() instanceof IMAPStore store && store.hasCapability("MULTIAPPEND");
+        }
+
+        private static Date resolveInternalDate(MimeMessage message) {
+                try {
+                        return message.getSentDate();
+                } catch (MessagingException exception) {
+                        log.debug("Failed to resolve message sent date. Using the server time for INTERNALDATE.", exception);
+                        return null;
+                }
+        }
+
+        private static Literal toLiteral(MimeMessage message) throws MessagingException {
+                final var buffer = new ByteArrayOutputStream();
+                try (var output = new CRLFOutputStream(buffer)) {
+                        message.writeTo(output);
+                } catch (IOException exception) {
+                        throw new MessagingException("Failed to serialize message for APPEND.", exception);
+                }
+
+                final var bytes = buffer.toByteArray();
+                return new Literal() {
+                        @Override
+                        public int size() {
+                                return bytes.length;
+                        }
+
+                        @Override
+                        public void writeTo(OutputStream output) throws IOException {
+                                output.write(bytes);
+                        }
+                };
+        }
+
+        private record AppendEntry(Literal literal, Date internalDate) {
+        }
+
         boolean tryAppendUsingImapFolder(Folder folder, MimeMessage message) {
                 try {
                         final var imapFolderClass = Class.forName(imapFolderClassName);
@@ -0,0 +1,331 @@
+package com.github.sigmalko.protonmail.export.integration.gmail.upload;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.mail.Folder;
+import jakarta.mail.MessagingException;
+import jakarta.mail.search.HeaderTerm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Component;
+
+import com.github.sigmalko.protonmail.export.domain.migration.MigrationService;
+import com.github.sigmalko.protonmail.export.domain.migration.MigrationService.UploadCandidate;
+import com.github.sigmalko.protonmail.export.domain.migration.MigrationService.UploadCursor;
+import com.github.sigmalko.protonmail.export.domain.migration.MigrationService.UploadedMessage;
+import com.github.sigmalko.protonmail.export.domain.migration.UploadOrder;
+import com.github.sigmalko.protonmail.export.integration.eml.EmlContentHasher;
+import com.github.sigmalko.protonmail.export.integration.gmail.GmailImapClientSupport;
+import com.github.sigmalko.protonmail.export.integration.gmail.GmailImapClientSupport.FolderSession;
+import com.github.sigmalko.protonmail.export.integration.gmail.GmailImapProperties;
+import com.github.sigmalko.protonmail.export.integration.gmail.seed.EmlFileLiteral;
+import com.github.sigmalko.protonmail.export.integration.gmail.seed.GmailMessageAppender;
+
+/**
+ * Uploads every message that is in the local files but not in Gmail. Candidates are paged from the database in
+ * {@code gmail.upload.order} with a keyset cursor, so the candidate list is never loaded whole, and handed in batches
+ * of {@code gmail.upload.batch-size} to {@code gmail.upload.concurrency} workers, each appending over its own pooled
+ * connection. A batch is flagged as uploading before the APPEND and as present in Gmail right after it, so a restarted
+ * run skips finished batches and looks up interrupted ones before appending them again. The UIDs reported by
+ * APPENDUID are stored with each message for {@link GmailUploadVerifier}.
+ */
+@Slf4j(topic = "GMAIL")
+@Component
+public class GmailBulkUploader {
+
+        private final GmailUploadProperties properties;
+        private final GmailImapProperties imapProperties;
+        private final GmailImapClientSupport clientSupport;
+        private final GmailMessageAppender appender;
+        private final GmailUploadQuotaScheduler quotaScheduler;
+        private final MigrationService migrationService;
+        private final EmlContentHasher contentHasher;
+        private final Counter uploadedCounter;
+        private final Counter alreadyPresentCounter;
+        private final Counter failedCounter;
+
+        public GmailBulkUploader(
+                        GmailUploadProperties properties,
+                        GmailImapProperties imapProperties,
+                        GmailImapClientSupport clientSupport,
+                        GmailMessageAppender appender,
+                        GmailUploadQuotaScheduler quotaScheduler,
+                        MigrationService migrationService,
+                        EmlContentHasher contentHasher,
+                        MeterRegistry meterRegistry) {
+                this.properties = properties;
+                this.imapProperties = imapProperties;
+                this.clientSupport = clientSupport;
+                this.appender = appender;
+                this.quotaScheduler = quotaScheduler;
+                this.migrationService = migrationService;
+                this.contentHasher = contentHasher;
+                this.uploadedCounter = uploadCounter(meterRegistry, "uploaded");
+                this.alreadyPresentCounter = uploadCounter(meterRegistry, "already-present");
+                this.failedCounter = uploadCounter(meterRegistry, "failed");
+        }
+
+        private static Counter uploadCounter(MeterRegistry meterRegistry, String result) {
+                return Counter.builder("gmail.upload.messages")
+                                .tag("result", result)
+                                .description("Messages processed by the Gmail bulk upload")
+                                .register(meterRegistry);
+        }
+
+        public UploadResult uploadMissingMessages() {
+                if (!clientSupport.hasCredentials()) {
+                        log.warn("Gmail IMAP credentials are not configured; skipping upload.");
+                        return new UploadResult(0, 0, 0);
+                }
+
+                quotaScheduler.updatePendingBytes(migrationService.sumUploadCandidateBytes());
+                final var concurrency = resolveConcurrency();
+                final var totals = new UploadTotals();
+                final BlockingQueue<Optional<List<UploadCandidate>>> batches = new ArrayBlockingQueue<>(concurrency * 2);
+                final var workers = new ArrayList<Thread>(concurrency);
+                for (var index = 0; index < concurrency; index++) {
+                        // Platform threads: APPEND blocks inside synchronized IMAP code, which pins virtual threads.
+                        workers.add(Thread.ofPlatform()
+                                        .name("gmail-upload-" + index)
+                                        .daemon()
+                                        .start(() -> uploadBatches(batches, totals)));
+                }
+
+                log.info(
+                                "Uploading messages missing in Gmail to folder '{}' with {} connections in {} order.",
+                                properties.targetFolder(),
+                                concurrency,
+                                properties.order());
+                try {
+                        enqueueCandidates(batches);
+                } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                        log.warn("Gmail upload was interrupted; the remaining messages are uploaded by the next run.");
+                } finally {
+                        stopWorkers(batches, workers);
+                }
+
+                final var result = totals.toResult();
+                log.info(
+                                "Gmail upload finished: {} uploaded, {} already present, {} failed.",
+                                result.uploaded(),
+                                result.alreadyPresent(),
+                                result.failed());
+                return result;
+        }
+
+        private void enqueueCandidates(BlockingQueue<Optional<List<UploadCandidate>>> batches) throws InterruptedException {
+                final var pageSize = Math.max(1, properties.pageSize());
+                final var batchSize = Math.max(1, properties.batchSize());
+                final var order = resolveOrder();
+                var cursor = UploadCursor.START;
+                while (true) {
+                        final var page = migrationService.findUploadCandidates(order, cursor, pageSize);
+                        for (var from = 0; from < page.size(); from += batchSize) {
+                                batches.put(Optional.of(page.subList(from, Math.min(page.size(), from + batchSize))));
+                        }
+
+                        if (page.size() < pageSize) {
+                                return;
+                        }
+                        cursor = page.getLast().cursor();
+                }
+        }
+
+        private UploadOrder resolveOrder() {
+                return switch (properties.order()) {
+                        case ID -> UploadOrder.insertionOrder();
+                        case NEWEST_FIRST -> UploadOrder.newestFirst();
+                        case SMALLEST_FIRST -> UploadOrder.smallestFirst();
+                        case LABEL_PRIORITY -> UploadOrder.labelPriority(properties.priorityLabels());
+                };
+        }
+
+        private void uploadBatches(BlockingQueue<Optional<List<UploadCandidate>>> batches, UploadTotals totals) {
+                FolderSession folderSession = null;
+                try {
+                        while (true) {
+                                final var next = batches.take();
+                                if (next.isEmpty()) {
+                                        return;
+                                }
+
+                                try {
+                                        if (folderSession == null) {
+                                                folderSession = clientSupport.openFolder(properties.targetFolder(), Folder.READ_WRITE);
+                                        }
+                                        uploadBatch(folderSession.folder(), next.get(), totals);
+                                } catch (MessagingException | RuntimeException exception) {
+                                        totals.failed.addAndGet(next.get().size());
+                                        failedCounter.increment(next.get().size());
+                                        log.warn(
+                                                        "Failed to upload a batch of {} messages; it is retried by the next run.",
+                                                        next.get().size(),
+                                                        exception);
+                                        if (folderSession != null) {
+                                                folderSession.invalidate();
+                                                folderSession = null;
+                                        }
+                                }
+                        }
+                } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                } finally {
+                        if (folderSession != null) {
+                                folderSession.close();
+                        }
+                }
+        }
+
+        private void uploadBatch(Folder folder, List<UploadCandidate> batch, UploadTotals totals)
+                        throws MessagingException, InterruptedException {
+                final var alreadyPresent = new ArrayList<String>();
+                final var messageIds = new ArrayList<String>(batch.size());
+                final var files = new ArrayList<EmlFileLiteral>(batch.size());
+                var bytes = 0L;
+                for (final var candidate : batch) {
+                        if (candidate.uploadStarted() && isInFolder(folder, candidate.messageId())) {
+                                alreadyPresent.add(candidate.messageId());
+                                continue;
+                        }
+
+                        final var file = openFile(candidate);
+                        if (file.isPresent()) {
+                                messageIds.add(candidate.messageId());
+                                files.add(file.get());
+                                bytes += file.get().size();
+                        } else {
+                                totals.failed.incrementAndGet();
+                                failedCounter.increment();
+                        }
+                }
+
+                final var present = new ArrayList<String>(alreadyPresent);
+                if (!files.isEmpty()) {
+                        quotaScheduler.acquire(bytes);
+                        migrationService.markUploadStarted(messageIds);
+                        final var appendUids = appender.appendFiles(folder, files);
+
+                        final var confirmed = new ArrayList<UploadedMessage>(messageIds.size());
+                        for (var index = 0; index < messageIds.size(); index++) {
+                                final var appendUid = index < appendUids.size() ? appendUids.get(index) : null;
+                                if (appendUid != null) {
+                                        confirmed.add(new UploadedMessage(
+                                                        messageIds.get(index), appendUid.uidvalidity, appendUid.uid));
+                                } else {
+                                        present.add(messageIds.get(index));
+                                }
+                        }
+                        migrationService.recordUploadedMessages(properties.targetFolder(), confirmed);
+                }
+
+                if (!present.isEmpty()) {
+                        migrationService.markMessagesInGmail(present);
+                }
+
+                totals.uploaded.addAndGet(messageIds.size());
+                totals.alreadyPresent.addAndGet(alreadyPresent.size());
+                uploadedCounter.increment(messageIds.size());
+                alreadyPresentCounter.increment(alreadyPresent.size());
+                log.debug("Uploaded {} messages ({} already present).", messageIds.size(), alreadyPresent.size());
+        }
+
+        /** An interrupted upload may have landed before the flag was set; a header search avoids a duplicate. */
+        private static boolean isInFolder(Folder folder, String messageId) throws MessagingException {
+                return folder.search(new HeaderTerm("Message-ID", messageId)).length > 0;
+        }
+
+        /**
+         * Opens the file unless it changed since the scan (size, and content when its hash was recorded); the next scan
+         * picks up the change. The stored message date becomes INTERNALDATE, so Gmail sorts the message by its original
+         * arrival.
+         */
+        private Optional<EmlFileLiteral> openFile(UploadCandidate candidate) {
+                final var internalDate = candidate.messageDate() != null
+                                ? Date.from(candidate.messageDate().toInstant())
+                                : null;
+                try {
+                        final var path = Path.of(candidate.filePath());
+                        if (Files.size(path) != candidate.fileSize()
+                                        || candidate.contentHash() != null
+                                                        && !candidate.contentHash().equals(contentHasher.hash(path))) {
+                                log.warn(
+                                                "EML file '{}' of message {} changed since it was scanned; skipping it until the next scan.",
+                                                candidate.filePath(),
+                                                candidate.messageId());
+                                return Optional.empty();
+                        }
+                        return Optional.of(EmlFileLiteral.open(path, internalDate));
+                } catch (IOException exception) {
+                        log.warn(
+                                        "Failed to read EML file '{}' of message {}.",
+                                        candidate.filePath(),
+                                        candidate.messageId(),
+                                        exception);
+                        return Optional.empty();
+                }
+        }
+
+        private int resolveConcurrency() {
+                final var requested = Math.max(1, properties.concurrency());
+                if (requested > imapProperties.poolMaxSize()) {
+                        log.warn(
+                                        "Requested upload concurrency {} exceeds the connection pool size {}; using {}.",
+                                        requested,
+                                        imapProperties.poolMaxSize(),
+                                        imapProperties.poolMaxSize());
+                        return Math.max(1, imapProperties.poolMaxSize());
+                }
+                return requested;
+        }
+
+        private static void stopWorkers(BlockingQueue<Optional<List<UploadCandidate>>> batches, List<Thread> workers) {
+                final var interrupted = Thread.interrupted();
+                if (interrupted) {
+                        // Batches that were not picked up yet stay pending in the database.
+                        batches.clear();
+                }
+
+                try {
+                        for (final var worker : workers) {
+                                batches.put(Optional.empty());
+                        }
+                        for (final var worker : workers) {
+                                worker.join();
+                        }
+                } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                }
+
+                if (interrupted) {
+                        Thread.currentThread().interrupt();
+                }
+        }
+
+        public record UploadResult(int uploaded, int alreadyPresent, int failed) {
+        }
+
+        private static final class UploadTotals {
+
+                private final AtomicInteger uploaded = new AtomicInteger();
+                private final AtomicInteger alreadyPresent = new AtomicInteger();
+                private final AtomicInteger failed = new AtomicInteger();
+
+                UploadResult toResult() {
+                        return new UploadResult(uploaded.get(), alreadyPresent.get(), failed.get());
+                }
+        }
+}
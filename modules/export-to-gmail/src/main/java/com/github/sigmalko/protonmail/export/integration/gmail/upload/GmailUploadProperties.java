@@ -0,0 +1,31 @@
+package com.github.sigmalko.protonmail.export.integration.gmail.upload;
+
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+@ConfigurationProperties(prefix = "gmail.upload")
+public record GmailUploadProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("exported") String targetFolder,
+        @DefaultValue("2") int concurrency,
+        @DefaultValue("20") int batchSize,
+        @DefaultValue("500") int pageSize,
+        @DefaultValue("true") boolean quotaEnabled,
+        @DefaultValue("0B") DataSize quotaPerHour,
+        @DefaultValue("500MB") DataSize quotaPerDay,
+        @DefaultValue("id") Order order,
+        @DefaultValue({"0", "10"}) List<String> priorityLabels,
+        @DefaultValue("50") int verifySampleSize
+) {
+
+        /** Upload order; {@code priorityLabels} are Proton label IDs (0 is Inbox, 10 is Starred). */
+        public enum Order {
+                ID,
+                NEWEST_FIRST,
+                SMALLEST_FIRST,
+                LABEL_PRIORITY
+        }
+}
@@ -0,0 +1,220 @@
+package com.github.sigmalko.protonmail.export.integration.gmail.upload;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.github.sigmalko.protonmail.export.domain.quota.UploadQuotaService;
+import com.github.sigmalko.protonmail.export.domain.quota.UploadQuotaService.QuotaCharge;
+
+/**
+ * Keeps uploads within Gmail's IMAP upload limits ({@code gmail.upload.quota-per-hour},
+ * {@code gmail.upload.quota-per-day}; a zero budget is unlimited). Every upload is recorded in a persisted ledger, and
+ * a budget admits an upload only while the bytes uploaded during the trailing period stay within it, so no hour or day
+ * ever carries more than its budget, across restarts included. An upload waits until enough earlier uploads have left
+ * every window; uploads pause at a budget boundary and resume on their own.
+ */
+@Slf4j(topic = "GMAIL")
+@Component
+public class GmailUploadQuotaScheduler {
+
+        private final UploadQuotaService quotaService;
+        private final Clock clock;
+        private final List<Budget> budgets = new ArrayList<>();
+        private final Deque<QuotaCharge> ledger = new ArrayDeque<>();
+        private final ReentrantLock uploadLock = new ReentrantLock(true);
+        private Duration retention = Duration.ZERO;
+        private long pendingBytes;
+
+        public GmailUploadQuotaScheduler(
+                        GmailUploadProperties properties,
+                        UploadQuotaService quotaService,
+                        Clock clock,
+                        MeterRegistry meterRegistry) {
+                this.quotaService = quotaService;
+                this.clock = clock;
+                if (properties.quotaEnabled()) {
+                        addBudget("hour", properties.quotaPerHour(), Duration.ofHours(1), meterRegistry);
+                        addBudget("day", properties.quotaPerDay(), Duration.ofDays(1), meterRegistry);
+                }
+                if (!budgets.isEmpty()) {
+                        ledger.addAll(quotaService.findChargesAfter(clock.instant().minus(retention)));
+                }
+
+                Gauge.builder("gmail.upload.quota.eta", this, scheduler -> scheduler.estimatedCompletion().toSeconds())
+                                .baseUnit("seconds")
+                                .description("Estimated time until the pending uploads fit into the upload budgets")
+                                .register(meterRegistry);
+        }
+
+        private void addBudget(String window, DataSize budget, Duration period, MeterRegistry meterRegistry) {
+                if (budget.toBytes() <= 0) {
+                        return;
+                }
+
+                final var added = new Budget(budget.toBytes(), period);
+                budgets.add(added);
+                if (period.compareTo(retention) > 0) {
+                        retention = period;
+                }
+                Gauge.builder("gmail.upload.quota.remaining", this, scheduler -> scheduler.remainingBytes(added))
+                                .tag("window", window)
+                                .baseUnit("bytes")
+                                .description("Upload budget left in the current window")
+                                .register(meterRegistry);
+        }
+
+        /** Sets the total size of the messages still waiting for upload, used for the ETA gauge. */
+        public synchronized void updatePendingBytes(long bytes) {
+                pendingBytes = Math.max(0, bytes);
+        }
+
+        /**
+         * Blocks until every budget can pay for the given bytes, then charges them. Uploads larger than a whole budget
+         * wait for an empty window and use it up for a full period.
+         */
+        public void acquire(long bytes) throws InterruptedException {
+                // Paused uploads queue up in order; the gauges only need the monitor and stay readable meanwhile.
+                uploadLock.lockInterruptibly();
+                try {
+                        var wait = tryCharge(bytes);
+                        while (!wait.isZero()) {
+                                log.info(
+                                                "Gmail upload budget exhausted; pausing uploads for {} until {}.",
+                                                wait.withNanos(0),
+                                                clock.instant().plus(wait));
+                                Thread.sleep(wait);
+                                wait = tryCharge(bytes);
+                        }
+                } finally {
+                        uploadLock.unlock();
+                }
+        }
+
+        /** Charges the bytes when every budget can pay for them, otherwise returns how long to wait. */
+        private synchronized Duration tryCharge(long bytes) {
+                if (budgets.isEmpty()) {
+                        return Duration.ZERO;
+                }
+
+                final var now = clock.instant();
+                prune(now);
+                var wait = Duration.ZERO;
+                for (final var budget : budgets) {
+                        final var budgetWait = budget.timeUntilAvailable(Math.min(bytes, budget.capacity()), now);
+                        if (budgetWait.compareTo(wait) > 0) {
+                                wait = budgetWait;
+                        }
+                }
+
+                if (wait.isZero()) {
+                        final var charge = new QuotaCharge(now, bytes);
+                        quotaService.recordCharge(charge);
+                        ledger.addLast(charge);
+                        pendingBytes = Math.max(0, pendingBytes - bytes);
+                }
+                return wait;
+        }
+
+        /** Forgets uploads that have left every window. */
+        private void prune(Instant now) {
+                final var cutoff = now.minus(retention);
+                var pruned = false;
+                while (!ledger.isEmpty() && !ledger.peekFirst().uploadedAt().isAfter(cutoff)) {
+                        ledger.removeFirst();
+                        pruned = true;
+                }
+                if (pruned) {
+                        quotaService.deleteChargesUpTo(cutoff);
+                }
+        }
+
+        private synchronized long remainingBytes(Budget budget) {
+                return Math.max(0, budget.capacity() - budget.used(clock.instant()));
+        }
+
+        /** Time until the pending bytes are admitted, assuming a full budget is uploaded in each later period. */
+        private synchronized Duration estimatedCompletion() {
+                if (pendingBytes == 0) {
+                        return Duration.ZERO;
+                }
+
+                final var now = clock.instant();
+                var eta = Duration.ZERO;
+                for (final var budget : budgets) {
+                        final var first = budget.timeUntilAvailable(Math.min(pendingBytes, budget.capacity()), now);
+                        final var laterPeriods = (pendingBytes - 1) / budget.capacity();
+                        final var budgetEta = first.plus(budget.period().multipliedBy(laterPeriods));
+                        if (budgetEta.compareTo(eta) > 0) {
+                                eta = budgetEta;
+                        }
+                }
+                return eta;
+        }
+
+        private final class Budget {
+
+                private final long capacity;
+                private final Duration period;
+
+                private Budget(long capacity, Duration period) {
+                        this.capacity = capacity;
+                        this.period = period;
+                }
+
+                long capacity() {
+                        return capacity;
+                }
+
+                Duration period() {
+                        return period;
+                }
+
+                /** Bytes uploaded during the period before {@code now}. */
+                long used(Instant now) {
+                        final var windowStart = now.minus(period);
+                        var used = 0L;
+                        for (final var charge : ledger) {
+                                if (charge.uploadedAt().isAfter(windowStart)) {
+                                        used += charge.bytes();
+                                }
+                        }
+                        return used;
+                }
+
+                /** Returns how long until enough uploads have left the window for the bytes to fit into it. */
+                Duration timeUntilAvailable(long bytes, Instant now) {
+                        final var windowStart = now.minus(period);
+                        var used = used(now);
+                        if (used + bytes <= capacity) {
+                                return Duration.ZERO;
+                        }
+
+                        for (final var charge : ledger) {
+                                if (!charge.uploadedAt().isAfter(windowStart)) {
+                                        continue;
+                                }
+
+                                used -= charge.bytes();
+                                if (used + bytes <= capacity) {
+                                        final var wait = Duration.between(now, charge.uploadedAt().plus(period));
+                                        return wait.isZero() || wait.isNegative() ? Duration.ofMillis(1) : wait;
+                                }
+                        }
+                        return period;
+                }
+        }
+}
@@ -0,0 +1,27 @@
+package com.github.sigmalko.protonmail.export.integration.gmail.upload;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Slf4j(topic = "GMAIL")
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "gmail.upload", name = "enabled", havingValue = "true")
+public class GmailUploadRunner {
+
+    private final GmailBulkUploader bulkUploader;
+    private final GmailUploadVerifier uploadVerifier;
+
+    public void run() {
+        log.info("##################################################");
+        log.info("Uploading messages missing in Gmail via IMAP APPEND...");
+        log.info("##################################################");
+
+        bulkUploader.uploadMissingMessages();
+        uploadVerifier.verifySample();
+        log.info("Gmail upload complete.");
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.sigmalko.protonmail.export.integration.gmail.upload;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+
+import jakarta.mail.FetchProfile;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.UIDFolder;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Component;
+
+import com.github.sigmalko.protonmail.export.domain.migration.MigrationService;
+import com.github.sigmalko.protonmail.export.domain.migration.MigrationService.UploadedMessage;
+import com.github.sigmalko.protonmail.export.integration.gmail.GmailImapClientSupport;
+import com.github.sigmalko.protonmail.export.integration.gmail.GmailThrottleGuard;
+
+/**
+ * Spot-checks uploads by the UIDs Gmail reported in APPENDUID instead of fetching every header again. A random sample
+ * of {@code gmail.upload.verify-sample-size} uploaded messages is looked up by UID in the upload folder; messages that
+ * are gone or carry another Message-ID lose their Gmail flag, so the next upload sends them again. Samples are only
+ * drawn under the folder's current UIDVALIDITY, since older UIDs no longer identify a message.
+ */
+@Slf4j(topic = "GMAIL")
+@Component
+@RequiredArgsConstructor
+public class GmailUploadVerifier {
+
+        private final GmailUploadProperties properties;
+        private final GmailImapClientSupport clientSupport;
+        private final GmailThrottleGuard throttleGuard;
+        private final MigrationService migrationService;
+
+        public VerificationResult verifySample() {
+                if (properties.verifySampleSize() <= 0) {
+                        return VerificationResult.EMPTY;
+                }
+
+                if (!clientSupport.hasCredentials()) {
+                        log.warn("Gmail IMAP credentials are not configured; skipping upload verification.");
+                        return VerificationResult.EMPTY;
+                }
+
+                try (var folderSession = clientSupport.openReadOnlyFolder(properties.targetFolder())) {
+                        final var folder = folderSession.folder();
+                        final var uidFolder = (UIDFolder) folder;
+                        final var sample = migrationService.findUploadedSample(
+                                        properties.targetFolder(), uidFolder.getUIDValidity(), properties.verifySampleSize());
+                        if (sample.isEmpty()) {
+                                log.info("No uploads with a known UID in folder '{}'; nothing to verify.", properties.targetFolder());
+                                return VerificationResult.EMPTY;
+                        }
+
+                        final var uids = sample.stream().mapToLong(UploadedMessage::uid).toArray();
+                        final var messages = throttleGuard.call("UID FETCH of uploaded messages", () -> {
+                                final var found = uidFolder.getMessagesByUID(uids);
+                                final var profile = new FetchProfile();
+                                profile.add("Message-ID");
+                                folder.fetch(Arrays.stream(found).filter(Objects::nonNull).toArray(Message[]::new), profile);
+                                return found;
+                        });
+
+                        final var missing = new ArrayList<String>();
+                        for (var index = 0; index < sample.size(); index++) {
+                                if (!hasMessageId(messages[index], sample.get(index).messageId())) {
+                                        missing.add(sample.get(index).messageId());
+                                }
+                        }
+                        if (!missing.isEmpty()) {
+                                migrationService.markMessagesMissingInGmail(missing);
+                        }
+
+                        final var result = new VerificationResult(sample.size(), sample.size() - missing.size(), missing.size());
+                        log.info(
+                                        "Verified {} uploaded messages by UID in folder '{}': {} confirmed, {} missing.",
+                                        result.sampled(),
+                                        properties.targetFolder(),
+                                        result.confirmed(),
+                                        result.missing());
+                        if (result.missing() > 0) {
+                                log.warn("Uploaded messages missing in Gmail: {}", missing);
+                        }
+                        return result;
+                } catch (MessagingException exception) {
+                        log.error("Failed to verify uploaded messages in folder '{}'.", properties.targetFolder(), exception);
+                        return VerificationResult.EMPTY;
+                }
+        }
+
+        private static boolean hasMessageId(Message message, String messageId) throws MessagingException {
+                if (message == null) {
+                        return false;
+                }
+
+                final var values = message.getHeader("Message-ID");
+                return values != null && Arrays.stream(values).anyMatch(value -> value.trim().equals(messageId.trim()));
+        }
+
+        public record VerificationResult(int sampled, int confirmed, int missing) {
+
+                static final VerificationResult EMPTY = new VerificationResult(0, 0, 0);
+        }
+}
@@ -0,0 +1,73 @@
+package com.github.sigmalko.protonmail.export.web.controller;
+
+import com.github.sigmalko.protonmail.export.integration.gmail.GmailFolderTopology;
+import com.github.sigmalko.protonmail.export.integration.gmail.GmailImapFetcher;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.time.Instant;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/gmail/folders")
+@RequiredArgsConstructor
+@Tag(
+        name = "Gmail folders",
+        description = "Custom GPT helper: endpoints describing the Gmail folder (label) tree the migration works against."
+)
+public class GmailFolderController {
+
+    private final GmailImapFetcher gmailImapFetcher;
+
+    @GetMapping
+    @Operation(
+            summary = "Describe the Gmail folder topology",
+            description = "Custom GPT: Call this to list Gmail folders with their message counts. The snapshot is cached, so repeated calls do not contact Gmail until it expires."
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Cached Gmail folder topology",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = FolderTopologyResponse.class))
+    )
+    @ApiResponse(responseCode = "503", description = "Gmail is not configured, could not be reached or is busy; retry later")
+    public ResponseEntity<FolderTopologyResponse> describeFolders() {
+        return gmailImapFetcher.fetchFolderTopology()
+                .map(FolderTopologyResponse::from)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+
+    @Schema(description = "Snapshot of the Gmail folder tree.")
+    public record FolderTopologyResponse(
+            @Schema(description = "When the snapshot was taken.") Instant discoveredAt,
+            @ArraySchema(schema = @Schema(implementation = FolderResponse.class)) List<FolderResponse> folders) {
+
+        static FolderTopologyResponse from(GmailFolderTopology topology) {
+            return new FolderTopologyResponse(
+                    topology.discoveredAt(),
+                    topology.folders().stream()
+                            .map(folder -> new FolderResponse(
+                                    folder.fullName(),
+                                    folder.holdsMessages(),
+                                    folder.attributes(),
+                                    folder.messageCount()))
+                            .toList());
+        }
+    }
+
+    @Schema(description = "A single Gmail folder.")
+    public record FolderResponse(
+            @Schema(description = "Full folder name, e.g. [Gmail]/All Mail.") String name,
+            @Schema(description = "Whether the folder can contain messages.") boolean selectable,
+            @ArraySchema(schema = @Schema(description = "IMAP LIST attribute such as \\\\All or \\\\Sent.")) List<String> attributes,
+            @Schema(description = "Number of messages, when reported by the server.") Integer messageCount) {}
+}
@@ -0,0 +1,44 @@
+package com.github.sigmalko.protonmail.export.integration.eml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class EmlScanPipelineTest {
+
+    @Test
+    @Timeout(10)
+    void persistsEveryParsedEntryInBatches() {
+        final var persisted = new CopyOnWriteArrayList<Integer>();
+        final var pipeline = new EmlScanPipeline<Integer, Integer>(4, 8, 5, Optional::of, persisted::addAll);
+
+        final var summary = pipeline.run(sink -> IntStream.range(0, 100).forEach(sink::accept));
+
+        assertEquals(new EmlScanPipeline.PipelineSummary(100, 100, 100), summary);
+        assertEquals(IntStream.range(0, 100).boxed().toList(), persisted.stream().sorted().toList());
+    }
+
+    @Test
+    @Timeout(10)
+    void skipsEntriesWhoseParserThrowsAndKeepsScanning() {
+        final var persisted = new CopyOnWriteArrayList<Integer>();
+        final var pipeline = new EmlScanPipeline<Integer, Integer>(2, 4, 3, value -> {
+            if (value % 10 == 0) {
+                throw new IllegalStateException("unreadable " + value);
+            }
+            return Optional.of(value);
+        }, persisted::addAll);
+
+        final var summary = pipeline.run(sink -> IntStream.range(0, 100).forEach(sink::accept));
+
+        final List<Integer> expected = IntStream.range(0, 100).filter(value -> value % 10 != 0).boxed().toList();
+        assertEquals(new EmlScanPipeline.PipelineSummary(100, expected.size(), expected.size()), summary);
+        assertEquals(expected, persisted.stream().sorted().toList());
+    }
+}
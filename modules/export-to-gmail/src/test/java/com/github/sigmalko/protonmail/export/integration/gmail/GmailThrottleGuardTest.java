@@ -0,0 +1,208 @@
+package com.github.sigmalko.protonmail.export.integration.gmail;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.mail.MessagingException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+@Timeout(10)
+class GmailThrottleGuardTest {
+
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        @Test
+        void halvesTheLimitOnThrottlingAndRaisesItAdditively() throws MessagingException {
+                final var guard = guard(Map.of("throttle-concurrency-max", "8", "throttle-retry-attempts", "1"));
+                assertEquals(8, limit());
+
+                assertThrows(MessagingException.class, () -> guard.call("throttled", GmailThrottleGuardTest::throttled));
+                assertEquals(4, limit());
+
+                guard.call("succeeded", () -> "ok");
+                assertEquals(4.25, limit());
+                for (var i = 0; i < 100; i++) {
+                        guard.call("succeeded", () -> "ok");
+                }
+                assertEquals(8, limit());
+        }
+
+        @Test
+        void neverLowersTheLimitBelowTheMinimum() {
+                final var guard = guard(Map.of(
+                                "throttle-concurrency-min", "3",
+                                "throttle-concurrency-max", "8",
+                                "throttle-retry-attempts", "1",
+                                "throttle-breaker-threshold", "100"));
+
+                for (var i = 0; i < 5; i++) {
+                        assertThrows(MessagingException.class, () -> guard.call("throttled", GmailThrottleGuardTest::throttled));
+                }
+
+                assertEquals(3, limit());
+        }
+
+        @Test
+        void lowersTheLimitOncePerCongestionEvent() throws Exception {
+                final var guard = guard(Map.of(
+                                "throttle-concurrency-max", "8",
+                                "throttle-retry-attempts", "1",
+                                "throttle-breaker-threshold", "100"));
+                final var started = new CountDownLatch(3);
+                final var proceed = new CountDownLatch(1);
+
+                try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                        final var calls = new ArrayList<Future<Object>>();
+                        for (var i = 0; i < 3; i++) {
+                                calls.add(executor.submit(() -> guard.call("concurrent", () -> {
+                                        started.countDown();
+                                        awaitUninterruptibly(proceed);
+                                        return throttled();
+                                })));
+                        }
+                        assertTrue(started.await(5, TimeUnit.SECONDS));
+                        proceed.countDown();
+                        for (final var call : calls) {
+                                final var failure = assertThrows(ExecutionException.class, call::get);
+                                assertTrue(failure.getCause() instanceof MessagingException);
+                        }
+                }
+                assertEquals(4, limit());
+
+                // An operation started after the decrease belongs to a new congestion event.
+                assertThrows(MessagingException.class, () -> guard.call("throttled", GmailThrottleGuardTest::throttled));
+                assertEquals(2, limit());
+        }
+
+        @Test
+        void opensTheBreakerAfterConsecutiveThrottlesAndResumesAfterThePause() throws MessagingException {
+                final var guard = guard(Map.of(
+                                "throttle-retry-attempts", "1",
+                                "throttle-breaker-threshold", "2",
+                                "throttle-breaker-pause", "PT0.3S"));
+
+                assertThrows(MessagingException.class, () -> guard.call("throttled", GmailThrottleGuardTest::throttled));
+                assertEquals(0, events("breaker-opened"));
+                assertThrows(MessagingException.class, () -> guard.call("throttled", GmailThrottleGuardTest::throttled));
+                assertEquals(1, events("breaker-opened"));
+
+                final var pausedAt = System.nanoTime();
+                assertEquals("resumed", guard.call("resumed", () -> "resumed"));
+                assertTrue(System.nanoTime() - pausedAt >= Duration.ofMillis(250).toNanos());
+        }
+
+        @Test
+        void aSuccessResetsTheConsecutiveThrottles() throws MessagingException {
+                final var guard = guard(Map.of("throttle-retry-attempts", "1", "throttle-breaker-threshold", "2"));
+
+                assertThrows(MessagingException.class, () -> guard.call("throttled", GmailThrottleGuardTest::throttled));
+                guard.call("succeeded", () -> "ok");
+                assertThrows(MessagingException.class, () -> guard.call("throttled", GmailThrottleGuardTest::throttled));
+
+                assertEquals(0, events("breaker-opened"));
+        }
+
+        @Test
+        void retriesThrottledOperationsUntilTheySucceed() throws MessagingException {
+                final var guard = guard(Map.of("throttle-retry-attempts", "3"));
+                final var attempts = new AtomicInteger();
+
+                final var result = guard.call("flaky", () -> attempts.incrementAndGet() < 3 ? throttled() : "done");
+
+                assertEquals("done", result);
+                assertEquals(3, attempts.get());
+                assertEquals(2, events("throttled"));
+                assertEquals(2, events("retried"));
+        }
+
+        @Test
+        void givesUpAfterTheRetryAttempts() {
+                final var guard = guard(Map.of("throttle-retry-attempts", "3", "throttle-breaker-threshold", "100"));
+                final var attempts = new AtomicInteger();
+
+                final var failure = assertThrows(MessagingException.class, () -> guard.call("throttled", () -> {
+                        attempts.incrementAndGet();
+                        return throttled();
+                }));
+
+                assertTrue(failure.getMessage().contains("[THROTTLED]"));
+                assertEquals(3, attempts.get());
+                assertEquals(3, events("throttled"));
+                assertEquals(2, events("retried"));
+        }
+
+        @Test
+        void rethrowsOtherFailuresWithoutRetrying() {
+                final var guard = guard(Map.of("throttle-retry-attempts", "3"));
+                final var attempts = new AtomicInteger();
+                final var cause = new MessagingException("NO [NONEXISTENT] Unknown folder");
+
+                final var failure = assertThrows(MessagingException.class, () -> guard.call("failing", () -> {
+                        attempts.incrementAndGet();
+                        throw cause;
+                }));
+
+                assertSame(cause, failure);
+                assertEquals(1, attempts.get());
+                assertEquals(0, events("throttled"));
+        }
+
+        @Test
+        void recognisesThrottlingInTheCauseChain() {
+                final var guard = guard(Map.of("throttle-retry-attempts", "1"));
+
+                assertThrows(IllegalStateException.class, () -> guard.call("wrapped", () -> {
+                        throw new IllegalStateException(new MessagingException("Too many simultaneous connections"));
+                }));
+
+                assertEquals(1, events("throttled"));
+        }
+
+        private GmailThrottleGuard guard(Map<String, String> throttleProperties) {
+                final var properties = new HashMap<String, String>();
+                properties.put("gmail.imap.throttle-retry-base", "PT0.001S");
+                properties.put("gmail.imap.throttle-retry-max", "PT0.002S");
+                throttleProperties.forEach((name, value) -> properties.put("gmail.imap." + name, value));
+                final var binder = new Binder(new MapConfigurationPropertySource(properties));
+                return new GmailThrottleGuard(binder.bindOrCreate("gmail.imap", GmailImapProperties.class), meterRegistry);
+        }
+
+        private double limit() {
+                return meterRegistry.get("gmail.imap.throttle.limit").gauge().value();
+        }
+
+        private double events(String event) {
+                return meterRegistry.get("gmail.imap.throttle.events").tag("event", event).counter().count();
+        }
+
+        private static void awaitUninterruptibly(CountDownLatch latch) {
+                try {
+                        latch.await();
+                } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                }
+        }
+
+        private static <T> T throttled() throws MessagingException {
+                throw new MessagingException("NO [THROTTLED] Please slow down");
+        }
+}
@@ -0,0 +1,107 @@
+package com.github.sigmalko.protonmail.export.integration.gmail.seed;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.eclipse.angus.mail.util.CRLFOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class EmlFileLiteralTest {
+
+        @TempDir
+        Path directory;
+
+        @ParameterizedTest
+        @ValueSource(strings = {
+                "Subject: crlf\r\n\r\nbody\r\n",
+                "Subject: bare lf\n\nbody\n",
+                "Subject: bare cr\r\rbody\r",
+                "Subject: trailing cr\r\n\r\nbody\r",
+                "Subject: mixed\r\nA: lf\nB: cr\r\r\n\n\r\rbody\n\r",
+                "",
+                "\r",
+                "\n",
+                "\r\r\n\n"
+        })
+        void sizeMatchesTheBytesWrittenByCrlfOutputStream(String content) throws IOException {
+                final var file = write(content);
+                final var expected = convertWithCrlfOutputStream(content);
+
+                final var literal = EmlFileLiteral.open(file, null);
+
+                assertEquals(expected.length, literal.size());
+                assertArrayEquals(expected, writeTo(literal));
+        }
+
+        @Test
+        void failsWhenACrlfFileShrinksAfterOpening() throws IOException {
+                final var file = write("Subject: shrinking\r\n\r\nbody\r\n");
+                final var literal = EmlFileLiteral.open(file, null);
+                try (var channel = Files.newByteChannel(file, StandardOpenOption.WRITE)) {
+                        channel.truncate(10);
+                }
+
+                assertThrows(IOException.class, () -> writeTo(literal));
+        }
+
+        @Test
+        void stopsAtTheLiteralSizeWhenAConvertedFileGrowsAfterOpening() throws IOException {
+                final var file = write("Subject: growing\n\nbody\n");
+                final var literal = EmlFileLiteral.open(file, null);
+                Files.writeString(file, "more\n".repeat(1000), StandardOpenOption.APPEND);
+                final var output = new ByteArrayOutputStream();
+
+                assertThrows(IOException.class, () -> literal.writeTo(output));
+                assertTrue(output.size() <= literal.size());
+        }
+
+        @Test
+        void failsWhenAConvertedFileShrinksAfterOpening() throws IOException {
+                final var file = write("Subject: shrinking\n\nbody\n");
+                final var literal = EmlFileLiteral.open(file, null);
+                Files.writeString(file, "Subject: s\n");
+                final var output = new ByteArrayOutputStream();
+
+                assertThrows(IOException.class, () -> literal.writeTo(output));
+                assertTrue(output.size() <= literal.size());
+        }
+
+        @Test
+        void stopsAtTheLiteralSizeWhenACrlfFileGrowsAfterOpening() throws IOException {
+                final var file = write("Subject: growing\r\n\r\nbody\r\n");
+                final var literal = EmlFileLiteral.open(file, null);
+                Files.writeString(file, "more\r\n".repeat(1000), StandardOpenOption.APPEND);
+
+                assertEquals(literal.size(), writeTo(literal).length);
+        }
+
+        private Path write(String content) throws IOException {
+                return Files.writeString(directory.resolve("message.eml"), content, StandardCharsets.ISO_8859_1);
+        }
+
+        private static byte[] convertWithCrlfOutputStream(String content) throws IOException {
+                final var output = new ByteArrayOutputStream();
+                final var converted = new CRLFOutputStream(output);
+                converted.write(content.getBytes(StandardCharsets.ISO_8859_1));
+                converted.flush();
+                return output.toByteArray();
+        }
+
+        private static byte[] writeTo(EmlFileLiteral literal) throws IOException {
+                final var output = new ByteArrayOutputStream();
+                literal.writeTo(output);
+                return output.toByteArray();
+        }
+}
@@ -0,0 +1,234 @@
+package com.github.sigmalko.protonmail.export.integration.gmail.upload;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.util.unit.DataSize;
+
+import com.github.sigmalko.protonmail.export.domain.quota.UploadQuotaService;
+import com.github.sigmalko.protonmail.export.domain.quota.UploadQuotaService.QuotaCharge;
+
+@Timeout(10)
+class GmailUploadQuotaSchedulerTest {
+
+        private final MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+        private final InMemoryQuotaService quotaService = new InMemoryQuotaService();
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        @Test
+        void chargesUploadsAgainstEveryBudget() throws InterruptedException {
+                final var scheduler = scheduler(300, 1000, meterRegistry);
+
+                scheduler.acquire(200);
+
+                assertEquals(100, remaining(meterRegistry, "hour"));
+                assertEquals(800, remaining(meterRegistry, "day"));
+                assertEquals(List.of(new QuotaCharge(clock.instant(), 200)), quotaService.charges);
+        }
+
+        @Test
+        void waitsUntilTheOldestUploadsLeaveTheWindow() throws InterruptedException {
+                final var scheduler = scheduler(0, 1000, meterRegistry);
+                scheduler.acquire(600);
+                clock.advance(Duration.ofHours(12));
+                scheduler.acquire(400);
+
+                scheduler.updatePendingBytes(100);
+                assertEquals(Duration.ofHours(12).toSeconds(), eta(meterRegistry));
+
+                clock.advance(Duration.ofHours(6));
+                assertEquals(Duration.ofHours(6).toSeconds(), eta(meterRegistry));
+
+                // Both uploads have to leave the window before a full budget fits again.
+                scheduler.updatePendingBytes(1000);
+                assertEquals(Duration.ofHours(18).toSeconds(), eta(meterRegistry));
+        }
+
+        @Test
+        void estimatesOneMorePeriodForEveryFurtherBudget() throws InterruptedException {
+                final var scheduler = scheduler(0, 1000, meterRegistry);
+                scheduler.acquire(1000);
+
+                scheduler.updatePendingBytes(2500);
+
+                assertEquals(Duration.ofDays(3).toSeconds(), eta(meterRegistry));
+        }
+
+        @Test
+        void takesTheLongestWaitAcrossBudgets() throws InterruptedException {
+                final var scheduler = scheduler(300, 1000, meterRegistry);
+                scheduler.acquire(300);
+
+                scheduler.updatePendingBytes(100);
+                assertEquals(Duration.ofHours(1).toSeconds(), eta(meterRegistry));
+
+                clock.advance(Duration.ofHours(1));
+                scheduler.acquire(300);
+                clock.advance(Duration.ofHours(1));
+                scheduler.acquire(300);
+                clock.advance(Duration.ofHours(1));
+
+                assertEquals(100, remaining(meterRegistry, "day"));
+                assertEquals(300, remaining(meterRegistry, "hour"));
+                scheduler.updatePendingBytes(200);
+                assertEquals(Duration.ofHours(21).toSeconds(), eta(meterRegistry));
+        }
+
+        @Test
+        void admitsAnUploadLargerThanTheBudgetIntoAnEmptyWindow() throws InterruptedException {
+                final var scheduler = scheduler(0, 1000, meterRegistry);
+
+                scheduler.acquire(5000);
+
+                assertEquals(0, remaining(meterRegistry, "day"));
+                scheduler.updatePendingBytes(1);
+                assertEquals(Duration.ofDays(1).toSeconds(), eta(meterRegistry));
+        }
+
+        @Test
+        void prunesChargesThatLeftEveryWindow() throws InterruptedException {
+                final var scheduler = scheduler(300, 1000, meterRegistry);
+                scheduler.acquire(100);
+                clock.advance(Duration.ofHours(2));
+                scheduler.acquire(100);
+
+                clock.advance(Duration.ofHours(23));
+                scheduler.acquire(100);
+
+                assertEquals(2, quotaService.charges.size());
+                assertEquals(clock.instant().minus(Duration.ofDays(1)), quotaService.deletedUpTo);
+                assertEquals(800, remaining(meterRegistry, "day"));
+        }
+
+        @Test
+        void restoresTheLedgerAfterARestart() throws InterruptedException {
+                scheduler(0, 1000, meterRegistry).acquire(700);
+                clock.advance(Duration.ofHours(20));
+
+                final var restartedRegistry = new SimpleMeterRegistry();
+                final var restarted = scheduler(0, 1000, restartedRegistry);
+
+                assertEquals(300, remaining(restartedRegistry, "day"));
+                restarted.updatePendingBytes(500);
+                assertEquals(Duration.ofHours(4).toSeconds(), eta(restartedRegistry));
+        }
+
+        @Test
+        void ignoresChargesOutsideTheLongestWindowOnRestart() throws InterruptedException {
+                scheduler(0, 1000, meterRegistry).acquire(700);
+                clock.advance(Duration.ofDays(1));
+
+                final var restartedRegistry = new SimpleMeterRegistry();
+                scheduler(0, 1000, restartedRegistry);
+
+                assertEquals(1000, remaining(restartedRegistry, "day"));
+        }
+
+        @Test
+        void doesNotRecordChargesWhenTheQuotaIsDisabled() throws InterruptedException {
+                final var scheduler = new GmailUploadQuotaScheduler(
+                                properties(false, 300, 1000), quotaService, clock, meterRegistry);
+
+                scheduler.acquire(5000);
+                scheduler.updatePendingBytes(5000);
+
+                assertTrue(quotaService.charges.isEmpty());
+                assertEquals(0, eta(meterRegistry));
+        }
+
+        private GmailUploadQuotaScheduler scheduler(long perHour, long perDay, SimpleMeterRegistry registry) {
+                return new GmailUploadQuotaScheduler(properties(true, perHour, perDay), quotaService, clock, registry);
+        }
+
+        private static GmailUploadProperties properties(boolean quotaEnabled, long perHour, long perDay) {
+                return new GmailUploadProperties(
+                                true,
+                                "INBOX",
+                                1,
+                                1,
+                                1,
+                                quotaEnabled,
+                                DataSize.ofBytes(perHour),
+                                DataSize.ofBytes(perDay),
+                                GmailUploadProperties.Order.ID,
+                                List.of(),
+                                0);
+        }
+
+        private static double remaining(SimpleMeterRegistry registry, String window) {
+                return registry.get("gmail.upload.quota.remaining").tag("window", window).gauge().value();
+        }
+
+        private static double eta(SimpleMeterRegistry registry) {
+                return registry.get("gmail.upload.quota.eta").gauge().value();
+        }
+
+        private static final class MutableClock extends Clock {
+
+                private Instant now;
+
+                private MutableClock(Instant now) {
+                        this.now = now;
+                }
+
+                void advance(Duration duration) {
+                        now = now.plus(duration);
+                }
+
+                @Override
+                public ZoneId getZone() {
+                        return ZoneOffset.UTC;
+                }
+
+                @Override
+                public Clock withZone(ZoneId zone) {
+                        return this;
+                }
+
+                @Override
+                public Instant instant() {
+                        return now;
+                }
+        }
+
+        /** Keeps the ledger in memory, the way the repository-backed service persists it. */
+        private static final class InMemoryQuotaService extends UploadQuotaService {
+
+                private final List<QuotaCharge> charges = new ArrayList<>();
+                private Instant deletedUpTo;
+
+                private InMemoryQuotaService() {
+                        super(null);
+                }
+
+                @Override
+                public List<QuotaCharge> findChargesAfter(Instant after) {
+                        return charges.stream().filter(charge -> charge.uploadedAt().isAfter(after)).toList();
+                }
+
+                @Override
+                public void recordCharge(QuotaCharge charge) {
+                        charges.add(charge);
+                }
+
+                @Override
+                public int deleteChargesUpTo(Instant upTo) {
+                        final var before = charges.size();
+                        charges.removeIf(charge -> !charge.uploadedAt().isAfter(upTo));
+                        deletedUpTo = upTo;
+                        return before - charges.size();
+                }
+        }
+}